@@ -0,0 +1,35 @@
+package com.chatapp.whatsapp.broadcast;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One conversation publish as it travels between nodes: the already-serialized JSON payload
+ * plus the destination to deliver it to and where and when it was published.
+ *
+ * The text form is a single tab-separated header line followed by the payload, so the payload
+ * is carried verbatim instead of being escaped inside another JSON document.
+ */
+public record BackplaneEnvelope(String originNode,
+                                Long conversationId,
+                                String destination,
+                                long publishedAtMillis,
+                                byte[] payload) {
+
+    public String encode() {
+        return originNode + '\t' + conversationId + '\t' + publishedAtMillis + '\t' + destination + '\n'
+                + new String(payload, StandardCharsets.UTF_8);
+    }
+
+    public static BackplaneEnvelope decode(String text) {
+        int headerEnd = text.indexOf('\n');
+        if (headerEnd < 0) {
+            throw new IllegalArgumentException("Malformed backplane envelope");
+        }
+        String[] header = text.substring(0, headerEnd).split("\t", 4);
+        if (header.length != 4) {
+            throw new IllegalArgumentException("Malformed backplane envelope header");
+        }
+        return new BackplaneEnvelope(header[0], Long.valueOf(header[1]), header[3], Long.parseLong(header[2]),
+                text.substring(headerEnd + 1).getBytes(StandardCharsets.UTF_8));
+    }
+}
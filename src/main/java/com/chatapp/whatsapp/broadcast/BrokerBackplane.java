@@ -0,0 +1,38 @@
+package com.chatapp.whatsapp.broadcast;
+
+import java.util.function.Consumer;
+
+/**
+ * Relays conversation publishes between application nodes.
+ *
+ * Each node only subscribes to the conversations its own WebSocket sessions are subscribed to,
+ * so an implementation should deliver an envelope only to nodes subscribed to its conversation.
+ * Envelopes published by a node may be echoed back to it; receivers drop their own.
+ */
+public interface BrokerBackplane {
+
+    /**
+     * Reserved channel for cluster-wide presence; conversation ids start at 1, so it never clashes
+     */
+    Long PRESENCE_CHANNEL = 0L;
+
+    /**
+     * Send an envelope to every other node subscribed to its conversation
+     */
+    void publish(BackplaneEnvelope envelope);
+
+    /**
+     * Start receiving envelopes for a conversation
+     */
+    void subscribe(Long conversationId);
+
+    /**
+     * Stop receiving envelopes for a conversation
+     */
+    void unsubscribe(Long conversationId);
+
+    /**
+     * Add a callback that envelopes from other nodes are handed to; every receiver sees every envelope
+     */
+    void addReceiver(Consumer<BackplaneEnvelope> receiver);
+}
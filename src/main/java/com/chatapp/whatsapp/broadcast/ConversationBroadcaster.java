@@ -0,0 +1,184 @@
+package com.chatapp.whatsapp.broadcast;
+
+import com.chatapp.whatsapp.config.WireFormatNegotiationInterceptor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Single entry point for publishing to {@code /topic/conversation/{id}[/...]}.
+ *
+ * A publish is delivered to this node's subscribers through the local broker and relayed over the
+ * {@link BrokerBackplane} to the other nodes subscribed to the conversation, which deliver it to
+ * their own subscribers and record the cross-node fan-out latency.
+ */
+@Component
+@Slf4j
+public class ConversationBroadcaster {
+
+    public static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversation/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final BrokerBackplane backplane;
+    private final ConversationSubscriptionRegistry subscriptionRegistry;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final Timer fanoutLatency;
+    private final Counter relayed;
+    private final DistributionSummary payloadBytes;
+    private final Counter deliveries;
+    private final Counter deliveredBytes;
+
+    public ConversationBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                   BrokerBackplane backplane,
+                                   ConversationSubscriptionRegistry subscriptionRegistry,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.broadcast.node-id:}") String nodeId) {
+        this.messagingTemplate = messagingTemplate;
+        this.backplane = backplane;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.objectMapper = objectMapper;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.fanoutLatency = Timer.builder("chat.broadcast.fanout.latency")
+                .description("Time from publish on the origin node to local delivery on this node")
+                .tag("node", this.nodeId)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.relayed = Counter.builder("chat.broadcast.relayed")
+                .description("Publishes received from other nodes and delivered locally")
+                .tag("node", this.nodeId)
+                .register(meterRegistry);
+        this.payloadBytes = DistributionSummary.builder("chat.broadcast.payload.bytes")
+                .description("Serialized size of each broadcast; serialized once regardless of subscriber count")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.deliveries = Counter.builder("chat.broadcast.deliveries")
+                .description("Subscriptions to the broadcast's destination on this node it was delivered to")
+                .register(meterRegistry);
+        this.deliveredBytes = Counter.builder("chat.broadcast.delivered.bytes")
+                .description("Payload bytes written to subscribers on this node")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        backplane.addReceiver(this::deliverRelayed);
+    }
+
+    /**
+     * Publish to a conversation's main topic on every node
+     */
+    public void broadcast(Long conversationId, Object payload) {
+        broadcast(conversationId, topicOf(conversationId), payload);
+    }
+
+    /**
+     * Publish to a destination under a conversation's topic (e.g. {@code /typing}) on every node.
+     * The payload is serialized once; the same byte buffer is handed to the local broker for every
+     * subscriber session and to the backplane for the other nodes.
+     */
+    public void broadcast(Long conversationId, String destination, Object payload) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize broadcast payload for conversation " + conversationId, e);
+        }
+        deliverLocally(conversationId, destination, json, payload);
+        try {
+            backplane.publish(new BackplaneEnvelope(nodeId, conversationId, destination, System.currentTimeMillis(), json));
+        } catch (RuntimeException e) {
+            // Local subscribers already have the message; other nodes recover it from history
+            log.error("Failed to relay publish for conversation {} to other nodes", conversationId, e);
+        }
+    }
+
+    /**
+     * Publish to a conversation's main topic once the surrounding transaction commits
+     */
+    public void broadcastAfterCommit(Long conversationId, Object payload) {
+        broadcastAfterCommit(conversationId, topicOf(conversationId), payload);
+    }
+
+    /**
+     * Publish once the surrounding transaction commits, so subscribers never see a change that is
+     * rolled back or not yet visible to their reads; publishes immediately when there is no transaction
+     */
+    public void broadcastAfterCommit(Long conversationId, String destination, Object payload) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    broadcast(conversationId, destination, payload);
+                }
+            });
+        } else {
+            broadcast(conversationId, destination, payload);
+        }
+    }
+
+    /**
+     * Main topic of a conversation
+     */
+    public String topicOf(Long conversationId) {
+        return CONVERSATION_TOPIC_PREFIX + conversationId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Extract the conversation id from a conversation topic destination, or null for any other destination
+     */
+    public static Long conversationIdOf(String destination) {
+        if (destination == null || !destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+            return null;
+        }
+        int end = destination.indexOf('/', CONVERSATION_TOPIC_PREFIX.length());
+        try {
+            return Long.valueOf(destination.substring(CONVERSATION_TOPIC_PREFIX.length(),
+                    end < 0 ? destination.length() : end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hand the JSON to the local broker, along with the object it came from (when this node published it)
+     * so subscribers that negotiated CBOR are encoded from the object instead of from the JSON
+     */
+    private void deliverLocally(Long conversationId, String destination, byte[] json, Object source) {
+        messagingTemplate.send(destination, MessageBuilder.withPayload(json)
+                .setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+                .setHeader(WireFormatNegotiationInterceptor.SOURCE_PAYLOAD_HEADER, source)
+                .build());
+        // Only sessions subscribed to this exact topic receive it; /typing and /receipts have their own subscribers
+        int subscriptions = subscriptionRegistry.localSubscriptions(destination);
+        payloadBytes.record(json.length);
+        deliveredBytes.increment((double) json.length * subscriptions);
+        deliveries.increment(subscriptions);
+    }
+
+    private void deliverRelayed(BackplaneEnvelope envelope) {
+        if (nodeId.equals(envelope.originNode()) || !subscriptionRegistry.hasLocalSubscribers(envelope.conversationId())) {
+            return;
+        }
+        deliverLocally(envelope.conversationId(), envelope.destination(), envelope.payload(), null);
+        relayed.increment();
+        fanoutLatency.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - envelope.publishedAtMillis())));
+    }
+}
@@ -0,0 +1,151 @@
+package com.chatapp.whatsapp.broadcast;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which conversations this node's WebSocket sessions are subscribed to and keeps the
+ * backplane subscribed to exactly those conversations. Counts are kept under this object's
+ * monitor; backplane calls are made after it is released.
+ */
+@Component
+public class ConversationSubscriptionRegistry {
+
+    private final BrokerBackplane backplane;
+
+    // sessionId -> (subscriptionId -> subscribed destination)
+    private final Map<String, Map<String, Subscription>> subscriptionsBySession = new HashMap<>();
+    private final Map<Long, Integer> subscriptionCounts = new HashMap<>();
+    private final Map<String, Integer> destinationCounts = new HashMap<>();
+
+    public ConversationSubscriptionRegistry(BrokerBackplane backplane, MeterRegistry meterRegistry) {
+        this.backplane = backplane;
+        Gauge.builder("chat.broadcast.subscribed_conversations", this, ConversationSubscriptionRegistry::subscribedConversations)
+                .description("Conversations with at least one subscriber on this node")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    public synchronized boolean hasLocalSubscribers(Long conversationId) {
+        return subscriptionCounts.containsKey(conversationId);
+    }
+
+    /**
+     * Number of local subscriptions to exactly this destination (e.g. a conversation's {@code /typing} topic)
+     */
+    public synchronized int localSubscriptions(String destination) {
+        return destinationCounts.getOrDefault(destination, 0);
+    }
+
+    public synchronized int subscribedConversations() {
+        return subscriptionCounts.size();
+    }
+
+    void subscribe(String sessionId, String subscriptionId, String destination) {
+        Long conversationId = ConversationBroadcaster.conversationIdOf(destination);
+        if (sessionId == null || subscriptionId == null || conversationId == null) {
+            return;
+        }
+        List<Long> changed = new ArrayList<>(2);
+        synchronized (this) {
+            Subscription previous = subscriptionsBySession.computeIfAbsent(sessionId, id -> new HashMap<>())
+                    .put(subscriptionId, new Subscription(conversationId, destination));
+            if (previous != null) {
+                release(previous, changed);
+            }
+            destinationCounts.merge(destination, 1, Integer::sum);
+            if (subscriptionCounts.merge(conversationId, 1, Integer::sum) == 1) {
+                changed.add(conversationId);
+            }
+        }
+        changed.forEach(this::syncBackplane);
+    }
+
+    void unsubscribe(String sessionId, String subscriptionId) {
+        List<Long> changed = new ArrayList<>(1);
+        synchronized (this) {
+            Map<String, Subscription> subscriptions = subscriptionsBySession.get(sessionId);
+            if (subscriptions == null) {
+                return;
+            }
+            Subscription subscription = subscriptions.remove(subscriptionId);
+            if (subscriptions.isEmpty()) {
+                subscriptionsBySession.remove(sessionId);
+            }
+            if (subscription != null) {
+                release(subscription, changed);
+            }
+        }
+        changed.forEach(this::syncBackplane);
+    }
+
+    void disconnect(String sessionId) {
+        List<Long> changed = new ArrayList<>();
+        synchronized (this) {
+            Map<String, Subscription> subscriptions = subscriptionsBySession.remove(sessionId);
+            if (subscriptions != null) {
+                subscriptions.values().forEach(subscription -> release(subscription, changed));
+            }
+        }
+        changed.forEach(this::syncBackplane);
+    }
+
+    private void release(Subscription subscription, List<Long> changed) {
+        if (destinationCounts.merge(subscription.destination(), -1, Integer::sum) == 0) {
+            destinationCounts.remove(subscription.destination());
+        }
+        Long conversationId = subscription.conversationId();
+        if (subscriptionCounts.merge(conversationId, -1, Integer::sum) == 0) {
+            subscriptionCounts.remove(conversationId);
+            changed.add(conversationId);
+        }
+    }
+
+    /**
+     * Bring the backplane subscription in line with the local subscriber count. Runs outside the
+     * monitor, since the backplane may block (e.g. on a database round trip); a concurrent flip for
+     * the same conversation is caught by re-reading the count after each call, so whichever thread
+     * calls the backplane last also leaves it matching the final count.
+     */
+    private void syncBackplane(Long conversationId) {
+        boolean wanted;
+        do {
+            wanted = hasLocalSubscribers(conversationId);
+            if (wanted) {
+                backplane.subscribe(conversationId);
+            } else {
+                backplane.unsubscribe(conversationId);
+            }
+        } while (wanted != hasLocalSubscribers(conversationId));
+    }
+
+    private record Subscription(Long conversationId, String destination) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.chatapp.whatsapp.broadcast;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-JVM stand-in for a shared message bus, connecting several {@link InMemoryBrokerBackplane}
+ * nodes. Envelopes are routed only to nodes subscribed to the envelope's conversation.
+ */
+public class InMemoryBackplaneBus {
+
+    private static final InMemoryBackplaneBus SHARED = new InMemoryBackplaneBus();
+
+    private final Map<Long, Set<InMemoryBrokerBackplane>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Bus shared by every application context in this JVM
+     */
+    public static InMemoryBackplaneBus shared() {
+        return SHARED;
+    }
+
+    void subscribe(Long conversationId, InMemoryBrokerBackplane node) {
+        subscribers.computeIfAbsent(conversationId, id -> ConcurrentHashMap.newKeySet()).add(node);
+    }
+
+    void unsubscribe(Long conversationId, InMemoryBrokerBackplane node) {
+        subscribers.computeIfPresent(conversationId, (id, nodes) -> {
+            nodes.remove(node);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    void publish(BackplaneEnvelope envelope, InMemoryBrokerBackplane from) {
+        for (InMemoryBrokerBackplane node : subscribers.getOrDefault(envelope.conversationId(), Set.of())) {
+            if (node != from) {
+                node.receive(envelope);
+            }
+        }
+    }
+}
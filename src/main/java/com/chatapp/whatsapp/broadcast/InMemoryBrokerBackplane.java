@@ -0,0 +1,42 @@
+package com.chatapp.whatsapp.broadcast;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * One node's connection to an {@link InMemoryBackplaneBus}. Delivery is synchronous on the publishing thread.
+ */
+public class InMemoryBrokerBackplane implements BrokerBackplane {
+
+    private final InMemoryBackplaneBus bus;
+    private final List<Consumer<BackplaneEnvelope>> receivers = new CopyOnWriteArrayList<>();
+
+    public InMemoryBrokerBackplane(InMemoryBackplaneBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void publish(BackplaneEnvelope envelope) {
+        bus.publish(envelope, this);
+    }
+
+    @Override
+    public void subscribe(Long conversationId) {
+        bus.subscribe(conversationId, this);
+    }
+
+    @Override
+    public void unsubscribe(Long conversationId) {
+        bus.unsubscribe(conversationId, this);
+    }
+
+    @Override
+    public void addReceiver(Consumer<BackplaneEnvelope> receiver) {
+        receivers.add(receiver);
+    }
+
+    void receive(BackplaneEnvelope envelope) {
+        receivers.forEach(receiver -> receiver.accept(envelope));
+    }
+}
@@ -0,0 +1,25 @@
+package com.chatapp.whatsapp.broadcast;
+
+import java.util.function.Consumer;
+
+/**
+ * Backplane for a single node: there is nobody to relay to, so publishes stop here
+ */
+public class LocalBrokerBackplane implements BrokerBackplane {
+
+    @Override
+    public void publish(BackplaneEnvelope envelope) {
+    }
+
+    @Override
+    public void subscribe(Long conversationId) {
+    }
+
+    @Override
+    public void unsubscribe(Long conversationId) {
+    }
+
+    @Override
+    public void addReceiver(Consumer<BackplaneEnvelope> receiver) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.chatapp.whatsapp.broadcast;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Backplane on PostgreSQL LISTEN/NOTIFY with one channel per conversation.
+ *
+ * A node LISTENs only on the channels of conversations it has local subscribers for, so the
+ * database itself routes each NOTIFY to the interested nodes. One dedicated connection is held
+ * by a listener thread; LISTEN/UNLISTEN requests are queued to that thread because the
+ * connection is not shared. Payloads too large for NOTIFY (8000 bytes) are parked in a
+ * short-lived overflow table and the notification carries only their id.
+ */
+@Slf4j
+public class PostgresBrokerBackplane implements BrokerBackplane {
+
+    static final String CHANNEL_PREFIX = "chat_conversation_";
+    static final int MAX_NOTIFY_BYTES = 7900;
+
+    private static final String OVERFLOW_MARKER = "@overflow:";
+    private static final long OVERFLOW_CLEANUP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int pollMillis;
+    private final Set<Long> channels = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<String> pendingCommands = new LinkedBlockingQueue<>();
+
+    private final List<Consumer<BackplaneEnvelope>> receivers = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private Thread listener;
+    private long lastOverflowCleanup;
+
+    public PostgresBrokerBackplane(DataSource dataSource, JdbcTemplate jdbcTemplate, int pollMillis) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollMillis = pollMillis;
+    }
+
+    public void start() {
+        jdbcTemplate.execute("CREATE UNLOGGED TABLE IF NOT EXISTS broadcast_overflow (" +
+                "id BIGSERIAL PRIMARY KEY, payload TEXT NOT NULL, created_at TIMESTAMP NOT NULL DEFAULT now())");
+        running = true;
+        listener = new Thread(this::runListenLoop, "broadcast-backplane-listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("PostgreSQL broadcast backplane started");
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            listener.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    @Override
+    public void publish(BackplaneEnvelope envelope) {
+        String text = envelope.encode();
+        if (text.getBytes(StandardCharsets.UTF_8).length > MAX_NOTIFY_BYTES) {
+            Long overflowId = jdbcTemplate.queryForObject(
+                    "INSERT INTO broadcast_overflow (payload) VALUES (?) RETURNING id", Long.class, text);
+            text = OVERFLOW_MARKER + overflowId;
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                channelOf(envelope.conversationId()), text);
+    }
+
+    @Override
+    public void subscribe(Long conversationId) {
+        if (channels.add(conversationId)) {
+            pendingCommands.add("LISTEN " + channelOf(conversationId));
+        }
+    }
+
+    @Override
+    public void unsubscribe(Long conversationId) {
+        if (channels.remove(conversationId)) {
+            pendingCommands.add("UNLISTEN " + channelOf(conversationId));
+        }
+    }
+
+    @Override
+    public void addReceiver(Consumer<BackplaneEnvelope> receiver) {
+        receivers.add(receiver);
+    }
+
+    static String channelOf(Long conversationId) {
+        return CHANNEL_PREFIX + conversationId;
+    }
+
+    private void runListenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+                // (Re)establish every channel; commands queued from here on are applied below
+                pendingCommands.clear();
+                for (Long conversationId : List.copyOf(channels)) {
+                    statement.execute("LISTEN " + channelOf(conversationId));
+                }
+
+                while (running) {
+                    String command;
+                    while ((command = pendingCommands.poll()) != null) {
+                        statement.execute(command);
+                    }
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                    cleanupOverflow();
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Broadcast backplane connection lost, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String text) {
+        try {
+            if (text.startsWith(OVERFLOW_MARKER)) {
+                long overflowId = Long.parseLong(text.substring(OVERFLOW_MARKER.length()));
+                text = jdbcTemplate.queryForObject(
+                        "SELECT payload FROM broadcast_overflow WHERE id = ?", String.class, overflowId);
+            }
+            BackplaneEnvelope envelope = BackplaneEnvelope.decode(text);
+            receivers.forEach(receiver -> receiver.accept(envelope));
+        } catch (Exception e) {
+            log.error("Failed to deliver backplane notification", e);
+        }
+    }
+
+    private void cleanupOverflow() {
+        long now = System.currentTimeMillis();
+        if (now - lastOverflowCleanup < OVERFLOW_CLEANUP_INTERVAL_MS) {
+            return;
+        }
+        lastOverflowCleanup = now;
+        try {
+            jdbcTemplate.update("DELETE FROM broadcast_overflow WHERE created_at < now() - interval '5 minutes'");
+        } catch (Exception e) {
+            log.warn("Could not clean up broadcast overflow rows: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.chatapp.whatsapp.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Thread-safe LRU cache bounded by the total weight of its values in bytes rather than by entry count.
+ * Values heavier than {@code maxEntryBytes} are never stored, so one large item cannot flush the hot set.
+ */
+public class ByteBoundedLruCache<K, V> {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final ToIntFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    public ByteBoundedLruCache(long maxBytes, long maxEntryBytes, ToIntFunction<V> weigher) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Store the value, evicting least recently used entries until the total fits. Returns false if it was too large.
+     */
+    public synchronized boolean put(K key, V value) {
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxEntryBytes) {
+            return false;
+        }
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            totalBytes -= weigher.applyAsInt(previous);
+        }
+        totalBytes += weight;
+        Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<K, V> entry = eldest.next();
+            totalBytes -= weigher.applyAsInt(entry.getValue());
+            eldest.remove();
+        }
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        V removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= weigher.applyAsInt(removed);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weightInBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,170 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of active conversation memberships in both directions:
+ * conversation to member user ids, and user to conversation ids.
+ *
+ * Each side is loaded lazily from conversation_participants the first time it is asked for.
+ * Loading happens inside {@link ConcurrentHashMap#computeIfAbsent}, so a concurrent
+ * add/remove for the same key waits for the load and is then applied on top of it.
+ * Writers should use the {@code *AfterCommit} variants so the index never runs ahead of the database.
+ */
+@Component
+public class MembershipIndex {
+
+    /**
+     * Rough heap cost of one entry in a ConcurrentHashMap key set: a 32-byte node,
+     * a 16-byte boxed Long and an 8-byte table slot.
+     */
+    static final int ESTIMATED_BYTES_PER_ENTRY = 56;
+
+    private final ConversationParticipantRepository participantRepository;
+    private final ReadWatermarkIndex readWatermarkIndex;
+    private final Map<Long, Set<Long>> membersByConversation = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> conversationsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong entryCount = new AtomicLong();
+
+    public MembershipIndex(ConversationParticipantRepository participantRepository,
+                           ReadWatermarkIndex readWatermarkIndex,
+                           MeterRegistry meterRegistry) {
+        this.participantRepository = participantRepository;
+        this.readWatermarkIndex = readWatermarkIndex;
+
+        Gauge.builder("chat.membership.index.entries", entryCount, AtomicLong::get)
+                .description("Membership entries held in memory across both directions")
+                .register(meterRegistry);
+        Gauge.builder("chat.membership.index.estimated_bytes", this, MembershipIndex::estimatedBytes)
+                .description("Estimated heap used by the membership index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check whether a user is an active member of a conversation
+     */
+    public boolean isMember(Long conversationId, Long userId) {
+        if (conversationId == null || userId == null) {
+            return false;
+        }
+        return members(conversationId).contains(userId);
+    }
+
+    /**
+     * Active member ids of a conversation (read-only view)
+     */
+    public Set<Long> members(Long conversationId) {
+        return Collections.unmodifiableSet(membersByConversation.computeIfAbsent(conversationId, this::loadMembers));
+    }
+
+    /**
+     * Conversation ids the user is an active member of (read-only view)
+     */
+    public Set<Long> conversationsOf(Long userId) {
+        return Collections.unmodifiableSet(conversationsByUser.computeIfAbsent(userId, this::loadConversations));
+    }
+
+    /**
+     * Members of a conversation if they are already in memory, else an empty set; never touches the database
+     */
+    public Set<Long> loadedMembers(Long conversationId) {
+        Set<Long> members = membersByConversation.get(conversationId);
+        return members != null ? Collections.unmodifiableSet(members) : Set.of();
+    }
+
+    /**
+     * Conversations of a user if they are already in memory, else an empty set; never touches the database
+     */
+    public Set<Long> loadedConversationsOf(Long userId) {
+        Set<Long> conversations = conversationsByUser.get(userId);
+        return conversations != null ? Collections.unmodifiableSet(conversations) : Set.of();
+    }
+
+    public void addMember(Long conversationId, Long userId) {
+        readWatermarkIndex.invalidate(conversationId);
+        membersByConversation.computeIfPresent(conversationId, (id, members) -> {
+            if (members.add(userId)) {
+                entryCount.incrementAndGet();
+            }
+            return members;
+        });
+        conversationsByUser.computeIfPresent(userId, (id, conversations) -> {
+            if (conversations.add(conversationId)) {
+                entryCount.incrementAndGet();
+            }
+            return conversations;
+        });
+    }
+
+    public void removeMember(Long conversationId, Long userId) {
+        readWatermarkIndex.invalidate(conversationId);
+        membersByConversation.computeIfPresent(conversationId, (id, members) -> {
+            if (members.remove(userId)) {
+                entryCount.decrementAndGet();
+            }
+            return members;
+        });
+        conversationsByUser.computeIfPresent(userId, (id, conversations) -> {
+            if (conversations.remove(conversationId)) {
+                entryCount.decrementAndGet();
+            }
+            return conversations;
+        });
+    }
+
+    public void addMemberAfterCommit(Long conversationId, Long userId) {
+        afterCommit(() -> addMember(conversationId, userId));
+    }
+
+    public void removeMemberAfterCommit(Long conversationId, Long userId) {
+        afterCommit(() -> removeMember(conversationId, userId));
+    }
+
+    public long estimatedBytes() {
+        return entryCount.get() * ESTIMATED_BYTES_PER_ENTRY;
+    }
+
+    private Set<Long> loadMembers(Long conversationId) {
+        Set<Long> members = ConcurrentHashMap.newKeySet();
+        for (ConversationParticipant participant : participantRepository.findByConversationIdAndIsActiveTrue(conversationId)) {
+            members.add(participant.getUserId());
+        }
+        entryCount.addAndGet(members.size());
+        return members;
+    }
+
+    private Set<Long> loadConversations(Long userId) {
+        Set<Long> conversations = ConcurrentHashMap.newKeySet();
+        for (ConversationParticipant participant : participantRepository.findByUserIdAndIsActiveTrue(userId)) {
+            conversations.add(participant.getConversationId());
+        }
+        entryCount.addAndGet(conversations.size());
+        return conversations;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
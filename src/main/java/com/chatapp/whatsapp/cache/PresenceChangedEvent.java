@@ -0,0 +1,7 @@
+package com.chatapp.whatsapp.cache;
+
+/**
+ * Published by {@link PresenceRegistry} when a user's first session connects or last session disconnects
+ */
+public record PresenceChangedEvent(Long userId, boolean online) {
+}
@@ -0,0 +1,314 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.broadcast.BackplaneEnvelope;
+import com.chatapp.whatsapp.broadcast.BrokerBackplane;
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.config.StompAuthorizationInterceptor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Who is online across the cluster, driven by the WebSocket session lifecycle rather than the users table.
+ *
+ * A user is online while at least one of their STOMP sessions is connected to any node. Each node
+ * tracks its own sessions and relays its transitions, plus a periodic snapshot of its online users,
+ * over the backplane's presence channel; a node not heard from for three heartbeats is treated as
+ * gone. A {@link PresenceChangedEvent} is published on every node whenever the cluster-wide state of
+ * a user flips. Only last_seen is persisted, by a periodic batched flush, so connects and
+ * disconnects never wait on the database.
+ */
+@Component
+@Slf4j
+public class PresenceRegistry {
+
+    private static final String FLUSH_SQL = "UPDATE users SET last_seen = ? WHERE id = ?";
+
+    private static final String PRESENCE_DESTINATION = "/presence";
+    private static final String CAME_ONLINE = "U";
+    private static final String WENT_OFFLINE = "D";
+    private static final String SNAPSHOT = "S";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BrokerBackplane backplane;
+    private final String nodeId;
+    private final long heartbeatMillis;
+    private final Map<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Long> userBySession = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> pendingLastSeen = new ConcurrentHashMap<>();
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+
+    public PresenceRegistry(JdbcTemplate jdbcTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            BrokerBackplane backplane,
+                            ConversationBroadcaster conversationBroadcaster,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.presence.relay.heartbeat-ms:10000}") long heartbeatMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.backplane = backplane;
+        this.nodeId = conversationBroadcaster.getNodeId();
+        this.heartbeatMillis = heartbeatMillis;
+        Gauge.builder("chat.presence.online_users", sessionsByUser, Map::size)
+                .description("Users with at least one connected WebSocket session on this node")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.remote_nodes", remoteNodes, Map::size)
+                .description("Other nodes currently relaying presence")
+                .register(meterRegistry);
+        backplane.addReceiver(this::onRelayed);
+        backplane.subscribe(BrokerBackplane.PRESENCE_CHANNEL);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Long userId = userIdOf(event.getMessage());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (userId != null && sessionId != null && connect(userId, sessionId)) {
+            relay(CAME_ONLINE + userId);
+            if (!isOnlineElsewhere(userId)) {
+                eventPublisher.publishEvent(new PresenceChangedEvent(userId, true));
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Long wentOffline = disconnect(event.getSessionId());
+        if (wentOffline != null) {
+            relay(WENT_OFFLINE + wentOffline);
+            if (!isOnlineElsewhere(wentOffline)) {
+                eventPublisher.publishEvent(new PresenceChangedEvent(wentOffline, false));
+            }
+        }
+    }
+
+    /**
+     * Whether the user has a connected session on any node
+     */
+    public boolean isOnline(Long userId) {
+        return userId != null && (isConnectedLocally(userId) || isOnlineElsewhere(userId));
+    }
+
+    /**
+     * O(1) check whether the user has a session connected to this node
+     */
+    public boolean isConnectedLocally(Long userId) {
+        return userId != null && sessionsByUser.containsKey(userId);
+    }
+
+    /**
+     * Register a session; returns true if this made the user go online
+     */
+    public boolean connect(Long userId, String sessionId) {
+        userBySession.put(sessionId, userId);
+        boolean[] cameOnline = new boolean[1];
+        sessionsByUser.compute(userId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = ConcurrentHashMap.newKeySet();
+                cameOnline[0] = true;
+                pendingLastSeen.put(userId, LocalDateTime.now());
+            }
+            sessions.add(sessionId);
+            return sessions;
+        });
+        return cameOnline[0];
+    }
+
+    /**
+     * Drop a session; returns the user id if this was their last session (they went offline), else null
+     */
+    public Long disconnect(String sessionId) {
+        Long userId = sessionId != null ? userBySession.remove(sessionId) : null;
+        if (userId == null) {
+            return null;
+        }
+        boolean[] wentOffline = new boolean[1];
+        sessionsByUser.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                wentOffline[0] = true;
+                pendingLastSeen.put(userId, LocalDateTime.now());
+                return null;
+            }
+            return sessions;
+        });
+        return wentOffline[0] ? userId : null;
+    }
+
+    /**
+     * Write every presence transition since the last flush in one JDBC batch
+     */
+    @Scheduled(fixedDelayString = "${app.presence.flush-interval-ms:5000}")
+    public void flush() {
+        if (pendingLastSeen.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(pendingLastSeen.size());
+        for (Long userId : List.copyOf(pendingLastSeen.keySet())) {
+            LocalDateTime lastSeen = pendingLastSeen.remove(userId);
+            if (lastSeen != null) {
+                batch.add(new Object[]{Timestamp.valueOf(lastSeen), userId});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} presence updates: {}", batch.size(), e.getMessage());
+            for (Object[] row : batch) {
+                pendingLastSeen.putIfAbsent((Long) row[1], ((Timestamp) row[0]).toLocalDateTime());
+            }
+        }
+    }
+
+    /**
+     * Announce this node's online users, and forget nodes that have stopped announcing theirs
+     */
+    @Scheduled(fixedDelayString = "${app.presence.relay.heartbeat-ms:10000}")
+    public void heartbeat() {
+        relay(SNAPSHOT + sessionsByUser.keySet().stream().map(String::valueOf).collect(Collectors.joining(",")));
+        long cutoff = System.currentTimeMillis() - 3 * heartbeatMillis;
+        for (Map.Entry<String, RemoteNode> entry : List.copyOf(remoteNodes.entrySet())) {
+            if (entry.getValue().lastHeardMillis < cutoff && remoteNodes.remove(entry.getKey(), entry.getValue())) {
+                log.info("Presence node {} stopped relaying; dropping its {} users", entry.getKey(), entry.getValue().users.size());
+                entry.getValue().users.forEach(userId -> publishIfFlipped(userId, false));
+            }
+        }
+    }
+
+    @PreDestroy
+    void markAllOffline() {
+        LocalDateTime now = LocalDateTime.now();
+        sessionsByUser.keySet().forEach(userId -> {
+            pendingLastSeen.put(userId, now);
+            relay(WENT_OFFLINE + userId);
+        });
+        sessionsByUser.clear();
+        userBySession.clear();
+        flush();
+    }
+
+    private void relay(String message) {
+        try {
+            backplane.publish(new BackplaneEnvelope(nodeId, BrokerBackplane.PRESENCE_CHANNEL, PRESENCE_DESTINATION,
+                    System.currentTimeMillis(), message.getBytes(StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            // The next snapshot carries the state anyway
+            log.warn("Could not relay presence: {}", e.getMessage());
+        }
+    }
+
+    private void onRelayed(BackplaneEnvelope envelope) {
+        if (!BrokerBackplane.PRESENCE_CHANNEL.equals(envelope.conversationId()) || nodeId.equals(envelope.originNode())) {
+            return;
+        }
+        String message = new String(envelope.payload(), StandardCharsets.UTF_8);
+        RemoteNode node = remoteNodes.computeIfAbsent(envelope.originNode(), id -> new RemoteNode());
+        node.lastHeardMillis = System.currentTimeMillis();
+        String body = message.substring(1);
+        switch (message.substring(0, 1)) {
+            case CAME_ONLINE -> {
+                Long userId = Long.valueOf(body);
+                if (node.users.add(userId)) {
+                    publishIfFlipped(userId, true);
+                }
+            }
+            case WENT_OFFLINE -> {
+                Long userId = Long.valueOf(body);
+                if (node.users.remove(userId)) {
+                    publishIfFlipped(userId, false);
+                }
+            }
+            case SNAPSHOT -> {
+                Set<Long> snapshot = body.isEmpty() ? Set.of() : Arrays.stream(body.split(","))
+                        .map(Long::valueOf)
+                        .collect(Collectors.toSet());
+                for (Long userId : List.copyOf(node.users)) {
+                    if (!snapshot.contains(userId) && node.users.remove(userId)) {
+                        publishIfFlipped(userId, false);
+                    }
+                }
+                for (Long userId : snapshot) {
+                    if (node.users.add(userId)) {
+                        publishIfFlipped(userId, true);
+                    }
+                }
+            }
+            default -> log.debug("Ignoring unknown presence message from {}", envelope.originNode());
+        }
+    }
+
+    /**
+     * After a remote node's listing of the user changed, publish an event if that flipped the cluster-wide state
+     */
+    private void publishIfFlipped(Long userId, boolean cameOnline) {
+        if (isConnectedLocally(userId)) {
+            return;
+        }
+        int listings = remoteListings(userId);
+        if (cameOnline ? listings == 1 : listings == 0) {
+            eventPublisher.publishEvent(new PresenceChangedEvent(userId, cameOnline));
+        }
+    }
+
+    private boolean isOnlineElsewhere(Long userId) {
+        return remoteListings(userId) > 0;
+    }
+
+    private int remoteListings(Long userId) {
+        int listings = 0;
+        for (RemoteNode node : remoteNodes.values()) {
+            if (node.users.contains(userId)) {
+                listings++;
+            }
+        }
+        return listings;
+    }
+
+    private static final class RemoteNode {
+        final Set<Long> users = ConcurrentHashMap.newKeySet();
+        volatile long lastHeardMillis;
+    }
+
+    private static Long userIdOf(Message<?> connectedMessage) {
+        // CONNECTED events carry the client's original CONNECT frame, where the user id was recorded
+        Object connect = connectedMessage.getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        if (!(connect instanceof Message<?> connectMessage)) {
+            return null;
+        }
+        Long userId = StompAuthorizationInterceptor.userIdOf(
+                SimpMessageHeaderAccessor.getSessionAttributes(connectMessage.getHeaders()));
+        if (userId != null) {
+            return userId;
+        }
+        String header = StompHeaderAccessor.wrap(connectMessage).getFirstNativeHeader(StompAuthorizationInterceptor.USER_ID_HEADER);
+        try {
+            return header != null ? Long.valueOf(header.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-conversation read watermarks of the active members, kept sorted in memory so that
+ * "how many have read message X" and "who has read message X" are a binary search over
+ * at most one entry per member instead of a scan of a per-message receipts table.
+ * Delivery watermarks are kept the same way, so the lowest delivered and read watermark of
+ * everyone but a sender (what a message's SENT/DELIVERED/READ status derives from) is a lookup.
+ *
+ * Conversations are loaded lazily from conversation_participants and dropped whenever their
+ * membership changes, to be reloaded on next use. Loading happens inside
+ * {@link ConcurrentHashMap#computeIfAbsent} and advances go through computeIfPresent, so an advance
+ * racing a load waits for it and is then applied on top of the (possibly older) loaded snapshot.
+ */
+@Component
+public class ReadWatermarkIndex {
+
+    private final ConversationParticipantRepository participantRepository;
+    private final Map<Long, ConversationWatermarks> byConversation = new ConcurrentHashMap<>();
+
+    public ReadWatermarkIndex(ConversationParticipantRepository participantRepository, MeterRegistry meterRegistry) {
+        this.participantRepository = participantRepository;
+        Gauge.builder("chat.read_watermarks.conversations", byConversation, Map::size)
+                .description("Conversations whose read watermarks are held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Number of members other than {@code senderId} whose read watermark is at or past the message
+     */
+    public int readCount(Long conversationId, Long messageId, Long senderId) {
+        return watermarks(conversationId).read().countAtLeast(messageId, senderId);
+    }
+
+    /**
+     * Number of members other than {@code senderId}, i.e. the M in "read by N of M"
+     */
+    public int audienceSize(Long conversationId, Long senderId) {
+        return watermarks(conversationId).read().sizeExcluding(senderId);
+    }
+
+    /**
+     * Ids of members other than {@code senderId} who have read the message, furthest-read first
+     */
+    public List<Long> readers(Long conversationId, Long messageId, Long senderId, int offset, int limit) {
+        return watermarks(conversationId).read().usersAtLeast(messageId, senderId, offset, limit);
+    }
+
+    /**
+     * Lowest read watermark among members other than {@code senderId}; 0 when there are none
+     */
+    public long minReadExcluding(Long conversationId, Long senderId) {
+        return watermarks(conversationId).read().minExcluding(senderId);
+    }
+
+    /**
+     * Lowest delivery watermark among members other than {@code senderId}; 0 when there are none
+     */
+    public long minDeliveredExcluding(Long conversationId, Long senderId) {
+        return watermarks(conversationId).delivered().minExcluding(senderId);
+    }
+
+    /**
+     * Move a member's read watermark forward, and their delivery watermark with it since a read
+     * message has been delivered; a no-op if the conversation is not loaded (a later load reads
+     * the committed watermarks)
+     */
+    public void advance(Long conversationId, Long userId, Long messageId) {
+        if (messageId == null) {
+            return;
+        }
+        byConversation.computeIfPresent(conversationId, (id, watermarks) -> {
+            watermarks.read().advance(userId, messageId);
+            watermarks.delivered().advance(userId, messageId);
+            return watermarks;
+        });
+    }
+
+    /**
+     * Move a member's delivery watermark forward; a no-op if the conversation is not loaded
+     */
+    public void advanceDelivered(Long conversationId, Long userId, Long messageId) {
+        if (messageId == null) {
+            return;
+        }
+        byConversation.computeIfPresent(conversationId, (id, watermarks) -> {
+            watermarks.delivered().advance(userId, messageId);
+            return watermarks;
+        });
+    }
+
+    /**
+     * {@link #advance} once the current transaction commits, or immediately outside a transaction
+     */
+    public void advanceAfterCommit(Long conversationId, Long userId, Long messageId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advance(conversationId, userId, messageId);
+                }
+            });
+        } else {
+            advance(conversationId, userId, messageId);
+        }
+    }
+
+    public void invalidate(Long conversationId) {
+        byConversation.remove(conversationId);
+    }
+
+    private ConversationWatermarks watermarks(Long conversationId) {
+        return byConversation.computeIfAbsent(conversationId, this::load);
+    }
+
+    private ConversationWatermarks load(Long conversationId) {
+        Map<Long, Long> readMarks = new HashMap<>();
+        Map<Long, Long> deliveredMarks = new HashMap<>();
+        for (ConversationParticipant participant : participantRepository.findByConversationIdAndIsActiveTrue(conversationId)) {
+            long lastRead = orZero(participant.getLastReadMessageId());
+            readMarks.put(participant.getUserId(), lastRead);
+            deliveredMarks.put(participant.getUserId(), Math.max(lastRead, orZero(participant.getLastDeliveredMessageId())));
+        }
+        return new ConversationWatermarks(new Watermarks(readMarks), new Watermarks(deliveredMarks));
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private record ConversationWatermarks(Watermarks read, Watermarks delivered) {
+    }
+
+    /**
+     * Members ordered by (watermark, userId) in two parallel arrays. A watermark advance moves one
+     * entry to its new position, shifting the entries in between.
+     */
+    static final class Watermarks {
+        private final long[] marks;
+        private final long[] users;
+        private final Map<Long, Long> markByUser;
+
+        Watermarks(Map<Long, Long> initial) {
+            int size = initial.size();
+            List<Map.Entry<Long, Long>> entries = new ArrayList<>(initial.entrySet());
+            entries.sort(Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            this.marks = new long[size];
+            this.users = new long[size];
+            for (int i = 0; i < size; i++) {
+                marks[i] = entries.get(i).getValue();
+                users[i] = entries.get(i).getKey();
+            }
+            this.markByUser = new HashMap<>(initial);
+        }
+
+        synchronized void advance(Long userId, long newMark) {
+            Long oldMark = markByUser.get(userId);
+            if (oldMark == null || newMark <= oldMark) {
+                return;
+            }
+            int from = indexOf(oldMark, userId);
+            int to = insertionPoint(newMark, userId) - 1;
+            // Entries between the old and new position shift one slot towards the front
+            System.arraycopy(marks, from + 1, marks, from, to - from);
+            System.arraycopy(users, from + 1, users, from, to - from);
+            marks[to] = newMark;
+            users[to] = userId;
+            markByUser.put(userId, newMark);
+        }
+
+        synchronized int countAtLeast(long messageId, Long excludedUser) {
+            int count = marks.length - lowerBound(messageId);
+            Long excludedMark = markByUser.get(excludedUser);
+            return excludedMark != null && excludedMark >= messageId ? count - 1 : count;
+        }
+
+        synchronized long minExcluding(Long excludedUser) {
+            int first = marks.length > 0 && excludedUser != null && users[0] == excludedUser ? 1 : 0;
+            return first < marks.length ? marks[first] : 0L;
+        }
+
+        synchronized int sizeExcluding(Long excludedUser) {
+            return markByUser.containsKey(excludedUser) ? marks.length - 1 : marks.length;
+        }
+
+        synchronized List<Long> usersAtLeast(long messageId, Long excludedUser, int offset, int limit) {
+            int first = lowerBound(messageId);
+            List<Long> result = new ArrayList<>(Math.min(limit, marks.length - first));
+            int skipped = 0;
+            for (int i = marks.length - 1; i >= first && result.size() < limit; i--) {
+                if (excludedUser != null && users[i] == excludedUser) {
+                    continue;
+                }
+                if (skipped++ >= offset) {
+                    result.add(users[i]);
+                }
+            }
+            return result;
+        }
+
+        // First index whose watermark is >= messageId
+        private int lowerBound(long messageId) {
+            int low = 0;
+            int high = marks.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (marks[mid] < messageId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // First index ordered after (mark, userId), ignoring the entry being moved
+        private int insertionPoint(long mark, long userId) {
+            int low = 0;
+            int high = marks.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (marks[mid] < mark || (marks[mid] == mark && users[mid] <= userId)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int indexOf(long mark, long userId) {
+            int index = Arrays.binarySearch(marks, mark);
+            // Step back to the first entry with this watermark, then scan the (userId-ordered) run
+            while (index > 0 && marks[index - 1] == mark) {
+                index--;
+            }
+            while (users[index] != userId) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.User;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Immutable snapshot of the user fields needed to render a message sender or participant
+ */
+@Value
+@Builder
+public class SenderProfile {
+    Long id;
+    String username;
+    String displayName;
+    String profileImage;
+
+    public static SenderProfile from(User user) {
+        return SenderProfile.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .displayName(user.getDisplayName())
+                .profileImage(user.hasProfileImage() ? user.getProfileImage() : user.getUserPhoto())
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.User;
+import com.chatapp.whatsapp.respository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded, TTL-evicting cache of sender display data, keyed by user id.
+ * Entries are invalidated by {@link com.chatapp.whatsapp.entity.UserEntityListener} whenever a user row changes.
+ */
+@Component
+public class SenderProfileCache {
+
+    private final UserRepository userRepository;
+    private final ExpiringLruCache<Long, SenderProfile> profiles;
+
+    public SenderProfileCache(UserRepository userRepository,
+                              @Value("${app.cache.sender-profiles.max-size:10000}") int maxSize,
+                              @Value("${app.cache.sender-profiles.ttl:PT5M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.profiles = new ExpiringLruCache<>(maxSize, ttl);
+    }
+
+    /**
+     * Get a single profile, loading it on a miss. Returns null for unknown users.
+     */
+    public SenderProfile get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        SenderProfile profile = profiles.get(userId);
+        if (profile != null) {
+            return profile;
+        }
+        return userRepository.findById(userId)
+                .map(this::store)
+                .orElse(null);
+    }
+
+    /**
+     * Get a profile only if it is already cached; never touches the database
+     */
+    public SenderProfile getIfCached(Long userId) {
+        return userId != null ? profiles.get(userId) : null;
+    }
+
+    /**
+     * Get profiles for all ids, loading every miss with a single query
+     */
+    public Map<Long, SenderProfile> getAll(Collection<Long> userIds) {
+        Map<Long, SenderProfile> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId == null || result.containsKey(userId)) {
+                continue;
+            }
+            SenderProfile profile = profiles.get(userId);
+            if (profile != null) {
+                result.put(userId, profile);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User user : userRepository.findAllById(missing)) {
+                result.put(user.getId(), store(user));
+            }
+        }
+        return result;
+    }
+
+    public String getUsername(Long userId) {
+        SenderProfile profile = get(userId);
+        return profile != null ? profile.getUsername() : "Unknown";
+    }
+
+    public void put(User user) {
+        if (user.getId() != null) {
+            store(user);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            profiles.invalidate(userId);
+        }
+    }
+
+    private SenderProfile store(User user) {
+        SenderProfile profile = SenderProfile.from(user);
+        profiles.put(user.getId(), profile);
+        return profile;
+    }
+}
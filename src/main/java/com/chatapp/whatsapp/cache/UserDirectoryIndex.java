@@ -0,0 +1,304 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory typeahead index over active users' usernames, display names (and each of their words) and emails.
+ *
+ * Every term is stored in a sorted map as {@code term + '\0' + userId}, so all users with a term starting
+ * with a prefix form one contiguous range. A lookup walks at most {@code max-scan} keys of that range, adds
+ * the searcher's own contacts (users sharing a conversation with them) that match, and returns the top
+ * {@code limit} by: contact first, then exact username match, then username prefix match, then username.
+ * Contacts come only from memberships already in the {@link MembershipIndex}, so a lookup never waits on
+ * the database for them; a searcher whose conversations are not cached yet just gets no contact boost.
+ *
+ * The search used to match the text anywhere in the username. To keep finding those users, every proper
+ * suffix of each username is held in a second sorted map the same way, so an infix is a prefix range there;
+ * when the prefix matches fill fewer than {@code limit} places the rest is topped up, after them and by
+ * username, from that range.
+ * Loaded once at startup and kept current by {@link com.chatapp.whatsapp.entity.UserEntityListener}.
+ */
+@Component
+@Slf4j
+public class UserDirectoryIndex {
+
+    private static final char SEPARATOR = '\0';
+    private static final String LOAD_ACTIVE_USERS =
+            "SELECT id, username, display_name, email FROM users WHERE is_active = true";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MembershipIndex membershipIndex;
+    private final NavigableMap<String, Long> terms = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Long> usernameSuffixes = new ConcurrentSkipListMap<>();
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Timer lookupTimer;
+    private final int maxScan;
+    private final int maxContacts;
+    private volatile boolean loaded;
+
+    public UserDirectoryIndex(JdbcTemplate jdbcTemplate,
+                              MembershipIndex membershipIndex,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.user-directory.max-scan:2000}") int maxScan,
+                              @Value("${app.user-directory.max-contacts:5000}") int maxContacts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.membershipIndex = membershipIndex;
+        this.maxScan = maxScan;
+        this.maxContacts = maxContacts;
+        this.lookupTimer = Timer.builder("chat.user_directory.lookup")
+                .description("Time to answer one typeahead lookup from the user directory index")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.user_directory.users", entries, Map::size)
+                .description("Active users held in the typeahead index")
+                .register(meterRegistry);
+        Gauge.builder("chat.user_directory.terms", terms, Map::size)
+                .description("Prefix-searchable terms held in the typeahead index")
+                .register(meterRegistry);
+        Gauge.builder("chat.user_directory.username_suffixes", usernameSuffixes, Map::size)
+                .description("Username suffixes held for infix matches in the typeahead index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the initial load has completed; until then callers should use the database queries
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            jdbcTemplate.query(LOAD_ACTIVE_USERS, rs -> {
+                index(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4));
+            });
+            loaded = true;
+            log.info("User directory index loaded with {} users", entries.size());
+        } catch (Exception e) {
+            log.warn("Could not load user directory index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Index a new or changed user, or drop them if they are no longer active
+     */
+    public void put(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        if (!user.isCurrentlyActive()) {
+            remove(user.getId());
+            return;
+        }
+        index(user.getId(), user.getUsername(), user.getDisplayName(), user.getEmail());
+    }
+
+    public void remove(Long userId) {
+        Entry previous = entries.remove(userId);
+        if (previous != null) {
+            for (String term : previous.terms()) {
+                terms.remove(key(term, userId));
+            }
+            for (String suffix : suffixesOf(previous.username())) {
+                usernameSuffixes.remove(key(suffix, userId));
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} user ids matching the prefix, best first, then users whose username merely
+     * contains it; the searcher is excluded
+     */
+    public List<Long> search(String prefix, Long searcherId, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return lookupTimer.record(() -> {
+            List<Long> ranked = rank(normalized, searcherId, limit);
+            if (ranked.size() < limit) {
+                appendUsernameInfixMatches(ranked, normalized, searcherId, limit);
+            }
+            return ranked;
+        });
+    }
+
+    private void appendUsernameInfixMatches(List<Long> ranked, String term, Long searcherId, int limit) {
+        Set<Long> found = new HashSet<>(ranked);
+        List<Long> infixMatches = new ArrayList<>();
+        int scanned = 0;
+        for (Long userId : usernameSuffixes.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+            if (++scanned > maxScan) {
+                break;
+            }
+            if (!userId.equals(searcherId) && found.add(userId)) {
+                infixMatches.add(userId);
+            }
+        }
+        infixMatches.sort(Comparator.comparing(id -> entries.containsKey(id) ? entries.get(id).username() : ""));
+        for (Long userId : infixMatches) {
+            if (ranked.size() >= limit) {
+                break;
+            }
+            ranked.add(userId);
+        }
+    }
+
+    private List<Long> rank(String prefix, Long searcherId, int limit) {
+        Set<Long> contacts = contactsOf(searcherId);
+        Map<Long, Integer> scores = new HashMap<>();
+
+        int scanned = 0;
+        for (Long userId : terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            if (++scanned > maxScan) {
+                break;
+            }
+            if (!userId.equals(searcherId)) {
+                scores.computeIfAbsent(userId, id -> score(id, prefix, contacts));
+            }
+        }
+        // Contacts outside the scanned part of the range still deserve to be found
+        for (Long contactId : contacts) {
+            if (!scores.containsKey(contactId)) {
+                Entry entry = entries.get(contactId);
+                if (entry != null && entry.matches(prefix)) {
+                    scores.put(contactId, score(contactId, prefix, contacts));
+                }
+            }
+        }
+
+        List<Long> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort(Comparator.<Long>comparingInt(scores::get).reversed()
+                .thenComparing(id -> entries.containsKey(id) ? entries.get(id).username() : ""));
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, limit)) : ranked;
+    }
+
+    private int score(Long userId, String prefix, Set<Long> contacts) {
+        Entry entry = entries.get(userId);
+        int score = contacts.contains(userId) ? 4 : 0;
+        if (entry != null) {
+            if (entry.username().equals(prefix)) {
+                score += 2;
+            } else if (entry.username().startsWith(prefix)) {
+                score += 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Users who share at least one conversation with the searcher, bounded so huge groups cannot blow up a lookup
+     */
+    private Set<Long> contactsOf(Long searcherId) {
+        if (searcherId == null) {
+            return Set.of();
+        }
+        Set<Long> contacts = new LinkedHashSet<>();
+        for (Long conversationId : membershipIndex.loadedConversationsOf(searcherId)) {
+            for (Long memberId : membershipIndex.loadedMembers(conversationId)) {
+                if (!memberId.equals(searcherId)) {
+                    contacts.add(memberId);
+                    if (contacts.size() >= maxContacts) {
+                        return contacts;
+                    }
+                }
+            }
+        }
+        return contacts;
+    }
+
+    private void index(long userId, String username, String displayName, String email) {
+        Set<String> userTerms = new LinkedHashSet<>();
+        addTerm(userTerms, username);
+        addTerm(userTerms, email);
+        addTerm(userTerms, displayName);
+        if (displayName != null) {
+            for (String word : displayName.split("\\s+")) {
+                addTerm(userTerms, word);
+            }
+        }
+
+        Entry entry = new Entry(normalize(username), userTerms.toArray(String[]::new));
+        List<String> suffixes = suffixesOf(entry.username());
+        Entry previous = entries.put(userId, entry);
+        if (previous != null) {
+            for (String term : previous.terms()) {
+                if (!userTerms.contains(term)) {
+                    terms.remove(key(term, userId));
+                }
+            }
+            for (String suffix : suffixesOf(previous.username())) {
+                if (!suffixes.contains(suffix)) {
+                    usernameSuffixes.remove(key(suffix, userId));
+                }
+            }
+        }
+        for (String term : entry.terms()) {
+            terms.put(key(term, userId), userId);
+        }
+        for (String suffix : suffixes) {
+            usernameSuffixes.put(key(suffix, userId), userId);
+        }
+    }
+
+    /**
+     * Every suffix but the whole username, which the prefix terms already cover
+     */
+    private static List<String> suffixesOf(String username) {
+        List<String> suffixes = new ArrayList<>(Math.max(0, username.length() - 1));
+        for (int i = 1; i < username.length(); i++) {
+            suffixes.add(username.substring(i));
+        }
+        return suffixes;
+    }
+
+    private static void addTerm(Set<String> userTerms, String value) {
+        String term = normalize(value);
+        if (!term.isEmpty()) {
+            userTerms.add(term);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String term, long userId) {
+        return term + SEPARATOR + userId;
+    }
+
+    private record Entry(String username, String[] terms) {
+
+        boolean matches(String prefix) {
+            for (String term : terms) {
+                if (term.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
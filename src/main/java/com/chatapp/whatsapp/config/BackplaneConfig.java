@@ -0,0 +1,43 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.broadcast.BrokerBackplane;
+import com.chatapp.whatsapp.broadcast.InMemoryBackplaneBus;
+import com.chatapp.whatsapp.broadcast.InMemoryBrokerBackplane;
+import com.chatapp.whatsapp.broadcast.LocalBrokerBackplane;
+import com.chatapp.whatsapp.broadcast.PostgresBrokerBackplane;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Selects how conversation publishes reach other application nodes ({@code app.broadcast.backplane}):
+ * {@code local} for a single node, {@code postgres} for LISTEN/NOTIFY between nodes sharing the database,
+ * or {@code in-memory} for several application contexts running in one JVM.
+ */
+@Configuration
+public class BackplaneConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.broadcast.backplane", havingValue = "local", matchIfMissing = true)
+    public BrokerBackplane localBrokerBackplane() {
+        return new LocalBrokerBackplane();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "app.broadcast.backplane", havingValue = "postgres")
+    public BrokerBackplane postgresBrokerBackplane(DataSource dataSource,
+                                                   JdbcTemplate jdbcTemplate,
+                                                   @Value("${app.broadcast.postgres.poll-ms:250}") int pollMillis) {
+        return new PostgresBrokerBackplane(dataSource, jdbcTemplate, pollMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.broadcast.backplane", havingValue = "in-memory")
+    public BrokerBackplane inMemoryBrokerBackplane() {
+        return new InMemoryBrokerBackplane(InMemoryBackplaneBus.shared());
+    }
+}
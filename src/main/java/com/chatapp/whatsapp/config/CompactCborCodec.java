@@ -0,0 +1,218 @@
+package com.chatapp.whatsapp.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The CBOR wire format of outbound STOMP frames.
+ *
+ * Map keys that appear in {@link #FIELDS} are written as small integers (their 1-based position)
+ * instead of strings; any other key is written as a string. The table is part of the protocol, so
+ * entries may only ever be appended. Timestamps are written as epoch seconds in the server's time
+ * zone, the same precision the JSON frames carry.
+ *
+ * A payload is encoded straight from the object when it is at hand, and from its JSON bytes
+ * otherwise (e.g. a broadcast relayed from another node); both give the same bytes. Inbound
+ * frames are read back the same way, so clients can send what they receive; string keys and
+ * string timestamps are accepted as well.
+ */
+final class CompactCborCodec {
+
+    static final List<String> FIELDS = List.of(
+            "id", "conversationId", "senderId", "content", "messageType", "sentAt", "isDeleted", "isEdited",
+            "status", "senderUsername", "senderDisplayName", "senderProfileImage", "attachments", "fileName",
+            "filePath", "fileSize", "mimeType", "uploadedAt", "width", "height", "blurhash", "isTyping",
+            "userId", "lastDeliveredMessageId", "lastReadMessageId", "changes", "isOnline");
+
+    private static final Set<String> TIMESTAMP_FIELDS = Set.of("sentAt", "uploadedAt", "lastSeen", "createdAt");
+
+    private static final DateTimeFormatter JSON_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final Map<String, Integer> IDS_BY_FIELD = new HashMap<>();
+
+    static {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            IDS_BY_FIELD.put(FIELDS.get(i), i + 1);
+        }
+    }
+
+    private final ObjectMapper treeMapper;
+    private final ObjectMapper readMapper;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    CompactCborCodec() {
+        // Replaces the annotated string formats, so every LocalDateTime becomes epoch seconds
+        SimpleModule timestamps = new SimpleModule().addSerializer(LocalDateTime.class, new StdSerializer<>(LocalDateTime.class) {
+            @Override
+            public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+                generator.writeNumber(epochSeconds(value));
+            }
+        });
+        this.treeMapper = new ObjectMapper().findAndRegisterModules().registerModule(timestamps);
+
+        // Takes precedence over the annotated string formats, so epoch seconds and strings are both read
+        SimpleModule readTimestamps = new SimpleModule().addDeserializer(LocalDateTime.class, new StdDeserializer<>(LocalDateTime.class) {
+            @Override
+            public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+                if (parser.currentToken().isNumeric()) {
+                    return LocalDateTime.ofInstant(Instant.ofEpochSecond(parser.getLongValue()), ZoneId.systemDefault());
+                }
+                String text = parser.getValueAsString();
+                Long seconds = text != null ? parseTimestamp(text) : null;
+                if (seconds == null) {
+                    return (LocalDateTime) context.handleWeirdStringValue(LocalDateTime.class, text, "not a timestamp");
+                }
+                return LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds), ZoneId.systemDefault());
+            }
+        });
+        this.readMapper = new ObjectMapper().findAndRegisterModules().registerModule(readTimestamps)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Encode a payload object directly, without going through its JSON form
+     */
+    byte[] encode(Object payload) throws IOException {
+        return write(treeMapper.valueToTree(payload));
+    }
+
+    /**
+     * Encode a payload available only as JSON; string timestamps become epoch seconds
+     */
+    byte[] encodeJson(byte[] json) throws IOException {
+        JsonNode tree = jsonMapper.readTree(json);
+        convertTimestamps(tree);
+        return write(tree);
+    }
+
+    /**
+     * Read a frame back into a tree with the field names restored; the reverse of the encoders
+     */
+    JsonNode decode(byte[] cbor) throws IOException {
+        return restoreNames(cborMapper.readTree(cbor));
+    }
+
+    /**
+     * Read an inbound frame into the given type; the reverse of {@link #encode}
+     */
+    <T> T decode(byte[] cbor, Class<T> type) throws IOException {
+        return readMapper.treeToValue(decode(cbor), type);
+    }
+
+    private byte[] write(JsonNode tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = cborMapper.getFactory().createGenerator(out)) {
+            writeNode(generator, tree);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeNode(JsonGenerator generator, JsonNode node) throws IOException {
+        if (node.isObject()) {
+            generator.writeStartObject();
+            for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                Integer id = IDS_BY_FIELD.get(field.getKey());
+                if (id != null) {
+                    generator.writeFieldId(id);
+                } else {
+                    generator.writeFieldName(field.getKey());
+                }
+                writeNode(generator, field.getValue());
+            }
+            generator.writeEndObject();
+        } else if (node.isArray()) {
+            generator.writeStartArray();
+            for (JsonNode element : node) {
+                writeNode(generator, element);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeTree(node);
+        }
+    }
+
+    private static void convertTimestamps(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            for (Iterator<Map.Entry<String, JsonNode>> fields = object.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (TIMESTAMP_FIELDS.contains(field.getKey()) && field.getValue().isTextual()) {
+                    Long seconds = parseTimestamp(field.getValue().asText());
+                    if (seconds != null) {
+                        field.setValue(JsonNodeFactory.instance.numberNode(seconds));
+                    }
+                } else {
+                    convertTimestamps(field.getValue());
+                }
+            }
+        } else if (node.isArray()) {
+            node.forEach(CompactCborCodec::convertTimestamps);
+        }
+    }
+
+    private static JsonNode restoreNames(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode named = JsonNodeFactory.instance.objectNode();
+            node.fields().forEachRemaining(field -> named.set(nameOf(field.getKey()), restoreNames(field.getValue())));
+            return named;
+        }
+        if (node.isArray()) {
+            ArrayNode elements = JsonNodeFactory.instance.arrayNode();
+            node.forEach(element -> elements.add(restoreNames(element)));
+            return elements;
+        }
+        return node;
+    }
+
+    private static String nameOf(String key) {
+        try {
+            int id = Integer.parseInt(key);
+            return id >= 1 && id <= FIELDS.size() ? FIELDS.get(id - 1) : key;
+        } catch (NumberFormatException e) {
+            return key;
+        }
+    }
+
+    private static Long parseTimestamp(String text) {
+        try {
+            return epochSeconds(LocalDateTime.parse(text, JSON_TIMESTAMP));
+        } catch (DateTimeParseException e) {
+            try {
+                return epochSeconds(LocalDateTime.parse(text));
+            } catch (DateTimeParseException notIso) {
+                return null;
+            }
+        }
+    }
+
+    private static long epochSeconds(LocalDateTime value) {
+        return value.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
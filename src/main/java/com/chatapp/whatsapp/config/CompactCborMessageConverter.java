@@ -0,0 +1,46 @@
+package com.chatapp.whatsapp.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+
+import java.io.IOException;
+
+/**
+ * Reads inbound SEND frames with content-type application/cbor through {@link CompactCborCodec},
+ * so integer field ids and epoch-second timestamps map back to the payload's fields. Outbound
+ * frames are converted by {@link WireFormatNegotiationInterceptor}, not here.
+ */
+class CompactCborMessageConverter extends AbstractMessageConverter {
+
+    private final CompactCborCodec codec;
+
+    CompactCborMessageConverter(CompactCborCodec codec) {
+        super(WireFormatNegotiationInterceptor.APPLICATION_CBOR);
+        this.codec = codec;
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        if (!(message.getPayload() instanceof byte[] cbor)) {
+            return null;
+        }
+        try {
+            return codec.decode(cbor, targetClass);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read CBOR payload: " + e.getMessage(), e);
+        }
+    }
+}
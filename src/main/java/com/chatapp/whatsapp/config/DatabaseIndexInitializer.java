@@ -0,0 +1,93 @@
+package com.chatapp.whatsapp.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the PostgreSQL-specific tables and indexes that JPA annotations cannot describe
+ * (GIN indexes, tsvector columns). Runs after Hibernate has applied the entity schema, and
+ * every statement is idempotent so it is safe on each startup.
+ *
+ * Trigram indexes are only created when the pg_trgm extension is (or can be) installed;
+ * {@link #isTrigramAvailable()} tells name searches whether they can use them.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class DatabaseIndexInitializer {
+
+    private static final List<String> STATEMENTS = List.of(
+            // Inverted index over message content, one row per live message
+            "CREATE TABLE IF NOT EXISTS message_search (" +
+                    "message_id BIGINT PRIMARY KEY, " +
+                    "conversation_id BIGINT NOT NULL, " +
+                    "document TSVECTOR NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS idx_message_search_document ON message_search USING GIN (document)",
+            "CREATE INDEX IF NOT EXISTS idx_message_search_conversation ON message_search (conversation_id)",
+            // Highest message id the search backfill has covered, so restarts resume instead of rescanning
+            "CREATE TABLE IF NOT EXISTS message_search_backfill (" +
+                    "id SMALLINT PRIMARY KEY, " +
+                    "last_message_id BIGINT NOT NULL)",
+            // Image attachments still waiting for variants, walked by the image processor's sweep
+            "CREATE INDEX IF NOT EXISTS idx_message_attachments_unprocessed_images ON message_attachments (id) " +
+                    "WHERE blurhash IS NULL AND blob_hash IS NOT NULL AND mime_type LIKE 'image/%'"
+    );
+
+    private static final List<String> TRIGRAM_STATEMENTS = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_conversations_name_trgm " +
+                    "ON conversations USING GIN (LOWER(name) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_message_attachments_file_name_trgm " +
+                    "ON message_attachments USING GIN (LOWER(file_name) gin_trgm_ops)"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean trigramAvailable;
+
+    public DatabaseIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        STATEMENTS.forEach(this::apply);
+
+        trigramAvailable = installTrigramExtension() && TRIGRAM_STATEMENTS.stream().allMatch(this::apply);
+        if (!trigramAvailable) {
+            log.warn("pg_trgm is unavailable; name searches fall back to unindexed LIKE scans");
+        }
+    }
+
+    public boolean isTrigramAvailable() {
+        return trigramAvailable;
+    }
+
+    private boolean installTrigramExtension() {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        } catch (Exception e) {
+            // Creating an extension needs privileges the application role may not have; it may still be installed
+            log.debug("Could not create pg_trgm: {}", e.getMessage());
+        }
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm')", Boolean.class));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean apply(String statement) {
+        try {
+            jdbcTemplate.execute(statement);
+            return true;
+        } catch (Exception e) {
+            log.warn("Could not apply schema statement [{}]: {}", statement, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Authorizes STOMP SEND and SUBSCRIBE frames against the in-memory membership index.
+ *
+ * Clients identify themselves with a {@code userId} header on CONNECT; the id is kept in the
+ * session attributes. Any frame addressed to {@code /topic/conversation/{id}[/...]}, or any
+ * application SEND carrying a {@code conversationId} header, is only let through for active members.
+ * {@code /topic/presence/{userId}} is only open to that user. Application SENDs that carry the
+ * conversation id only in their body are checked against the same index by their handlers, which
+ * rely on every application SEND coming from a session that identified itself.
+ */
+@Component
+@Slf4j
+public class StompAuthorizationInterceptor implements ChannelInterceptor {
+
+    public static final String USER_ID_HEADER = "userId";
+    public static final String CONVERSATION_ID_HEADER = "conversationId";
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversation/";
+    private static final String PRESENCE_TOPIC_PREFIX = "/topic/presence/";
+    private static final String APPLICATION_DESTINATION_PREFIX = "/app/";
+
+    private final MembershipIndex membershipIndex;
+
+    @Value("${app.websocket.authorization.enabled:true}")
+    private boolean enabled;
+
+    public StompAuthorizationInterceptor(MembershipIndex membershipIndex) {
+        this.membershipIndex = membershipIndex;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.CONNECT) {
+            rememberUser(accessor);
+            return message;
+        }
+        if (!enabled || (command != StompCommand.SUBSCRIBE && command != StompCommand.SEND)) {
+            return message;
+        }
+
+        Long userId = userIdOf(accessor.getSessionAttributes());
+        String destination = accessor.getDestination();
+        if (userId == null && command == StompCommand.SEND && destination != null
+                && destination.startsWith(APPLICATION_DESTINATION_PREFIX)) {
+            // Handlers check the sender against the session's user; without one they could not
+            log.warn("Rejected SEND to {} from a session without a userId", destination);
+            throw new MessageDeliveryException(message, "CONNECT with a userId header before sending");
+        }
+        if (destination != null && destination.startsWith(PRESENCE_TOPIC_PREFIX)) {
+            // Presence updates are addressed to one user; only that user may subscribe or publish there
+            if (userId == null || !destination.equals(PRESENCE_TOPIC_PREFIX + userId)) {
+                log.warn("Rejected {} to {} for user {}", command, destination, userId);
+                throw new MessageDeliveryException(message, "Not allowed to access " + destination);
+            }
+            return message;
+        }
+
+        Long conversationId = conversationIdOf(accessor);
+        if (conversationId == null) {
+            return message;
+        }
+
+        if (userId == null || !membershipIndex.isMember(conversationId, userId)) {
+            log.warn("Rejected {} to conversation {} for user {}", command, conversationId, userId);
+            throw new MessageDeliveryException(message, "Not a member of conversation " + conversationId);
+        }
+        return message;
+    }
+
+    /**
+     * Read the authenticated user id stored on CONNECT, or null if the session did not identify itself
+     */
+    public static Long userIdOf(Map<String, Object> sessionAttributes) {
+        if (sessionAttributes == null) {
+            return null;
+        }
+        Object userId = sessionAttributes.get(USER_ID_ATTRIBUTE);
+        return userId instanceof Long ? (Long) userId : null;
+    }
+
+    private void rememberUser(StompHeaderAccessor accessor) {
+        String userId = accessor.getFirstNativeHeader(USER_ID_HEADER);
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (userId == null || sessionAttributes == null) {
+            return;
+        }
+        try {
+            sessionAttributes.put(USER_ID_ATTRIBUTE, Long.valueOf(userId.trim()));
+        } catch (NumberFormatException e) {
+            throw new MessageDeliveryException("Invalid userId header: " + userId);
+        }
+    }
+
+    private Long conversationIdOf(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination != null && destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+            int end = destination.indexOf('/', CONVERSATION_TOPIC_PREFIX.length());
+            return parseId(destination.substring(CONVERSATION_TOPIC_PREFIX.length(),
+                    end < 0 ? destination.length() : end));
+        }
+        if (accessor.getCommand() == StompCommand.SEND) {
+            String header = accessor.getFirstNativeHeader(CONVERSATION_ID_HEADER);
+            return header != null ? parseId(header.trim()) : null;
+        }
+        return null;
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new MessageDeliveryException("Invalid conversation id: " + value);
+        }
+    }
+}
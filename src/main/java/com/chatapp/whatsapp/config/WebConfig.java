@@ -1,5 +1,7 @@
 package com.chatapp.whatsapp.config;
 
+import com.chatapp.whatsapp.service.StreamingAttachmentService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +12,7 @@ import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.util.UrlPathHelper;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,6 +49,16 @@ public class WebConfig implements WebMvcConfigurer {
 
     @Bean
     public MultipartResolver multipartResolver() {
-        return new StandardServletMultipartResolver();
+        return new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                // Streamed attachments parse the raw body themselves; resolving parts here would spool it to disk.
+                // Matched on the decoded path within the application, so a context path or ;jsessionid cannot hide it
+                if (StreamingAttachmentService.STREAM_PATH.equals(UrlPathHelper.defaultInstance.getPathWithinApplication(request))) {
+                    return false;
+                }
+                return super.isMultipart(request);
+            }
+        };
     }
 }
@@ -1,15 +1,33 @@
 package com.chatapp.whatsapp.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthorizationInterceptor stompAuthorizationInterceptor;
+    private final WireFormatNegotiationInterceptor wireFormatNegotiationInterceptor;
+
+    public WebSocketConfig(StompAuthorizationInterceptor stompAuthorizationInterceptor,
+                           WireFormatNegotiationInterceptor wireFormatNegotiationInterceptor) {
+        this.stompAuthorizationInterceptor = stompAuthorizationInterceptor;
+        this.wireFormatNegotiationInterceptor = wireFormatNegotiationInterceptor;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable a simple in-memory message broker
@@ -24,5 +42,48 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        // Plain WebSocket endpoint; binary frames (and so CBOR) are only possible without SockJS
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new BinaryTransportHandshakeInterceptor());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authorize SEND/SUBSCRIBE against conversation membership before anything else sees the frame
+        registration.interceptors(stompAuthorizationInterceptor, wireFormatNegotiationInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Re-encode deliveries for subscriptions that negotiated CBOR
+        registration.interceptors(wireFormatNegotiationInterceptor);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Inbound SEND frames with content-type application/cbor, in the compact layout clients receive;
+        // JSON stays the default converter
+        messageConverters.add(new CompactCborMessageConverter(new CompactCborCodec()));
+        return true;
+    }
+
+    /**
+     * Marks sessions opened on the plain WebSocket endpoint as able to receive binary frames
+     */
+    private static class BinaryTransportHandshakeInterceptor implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            attributes.put(WireFormatNegotiationInterceptor.BINARY_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
     }
-}
\ No newline at end of file
+}
@@ -19,6 +19,10 @@ import java.util.concurrent.CountDownLatch;
  * 1. Run the Spring Boot server
  * 2. Run this console client
  * 3. Use commands to interact with the messaging system
+ *
+ * The server only lets a session subscribe to or send in conversations of the user named by the
+ * {@code userId} header of its STOMP CONNECT frame, so /login sends that frame before anything else.
+ * Pass the real user id as a third /login argument; otherwise a demo id is derived from the username.
  */
 public class WhatsAppConsoleClient {
 
@@ -205,15 +209,26 @@ public class WhatsAppConsoleClient {
 
     private void handleLogin(String[] parts) {
         if (parts.length < 3) {
-            System.out.println("Usage: /login <username> <password>");
+            System.out.println("Usage: /login <username> <password> [userId]");
             return;
         }
 
         // For demo purposes, we'll simulate login
         currentUsername = parts[1];
-        currentUserId = (long) currentUsername.hashCode(); // Simple ID generation
+        String[] credentials = parts[2].split("\\s+");
+        try {
+            currentUserId = credentials.length > 1
+                    ? Long.valueOf(credentials[1])
+                    : (long) currentUsername.hashCode(); // Simple ID generation
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid user ID: " + credentials[1]);
+            return;
+        }
 
-        System.out.println("✅ Logged in as: " + currentUsername);
+        // Identify the session; subscriptions and sends are authorized against this user
+        sendStompConnect(currentUserId);
+
+        System.out.println("✅ Logged in as: " + currentUsername + " (ID: " + currentUserId + ")");
         System.out.println("💡 You can now search for users and start chatting!");
     }
 
@@ -348,6 +363,18 @@ public class WhatsAppConsoleClient {
         }
     }
 
+    private void sendStompConnect(Long userId) {
+        StringBuilder connectFrame = new StringBuilder();
+        connectFrame.append("CONNECT\n");
+        connectFrame.append("accept-version:1.2\n");
+        connectFrame.append("host:localhost\n");
+        connectFrame.append("userId:").append(userId).append("\n");
+        connectFrame.append("\n");
+        connectFrame.append("\0");
+
+        client.send(connectFrame.toString());
+    }
+
     private void sendStompMessage(String destination, Map<String, Object> message) {
         try {
             // Simple STOMP frame format
@@ -0,0 +1,201 @@
+package com.chatapp.whatsapp.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Negotiates the payload encoding of outbound STOMP MESSAGE frames per subscription.
+ *
+ * A client asks for CBOR with {@code accept:application/cbor} on CONNECT (session default) or on
+ * SUBSCRIBE (that subscription only); JSON stays the default. Only sessions on the plain WebSocket
+ * endpoint can negotiate CBOR, because SockJS transports are text-only. Spring emits binary
+ * WebSocket frames only for {@code application/octet-stream}, so CBOR frames carry
+ * {@code content-type:application/octet-stream;codec=cbor}.
+ *
+ * A broadcast is serialized to JSON once and fanned out as the same byte array to every
+ * subscription, so conversions are cached by payload identity and each message is encoded as
+ * CBOR at most once no matter how many CBOR subscribers it has. When the publisher attaches the
+ * payload object under {@link #SOURCE_PAYLOAD_HEADER}, the CBOR is written from the object rather
+ * than by parsing the JSON back. The CBOR layout itself (integer field ids, numeric timestamps)
+ * is described in {@link CompactCborCodec}.
+ */
+@Component
+@Slf4j
+public class WireFormatNegotiationInterceptor implements ChannelInterceptor {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    public static final MimeType CBOR_FRAME_CONTENT_TYPE = new MimeType(MimeTypeUtils.APPLICATION_OCTET_STREAM, Map.of("codec", "cbor"));
+    public static final String BINARY_TRANSPORT_ATTRIBUTE = "binaryTransport";
+
+    /**
+     * Message header carrying the object a JSON payload was serialized from; never sent to clients
+     */
+    public static final String SOURCE_PAYLOAD_HEADER = "wireSourcePayload";
+
+    private static final String ACCEPT_HEADER = "accept";
+    private static final String SESSION_DEFAULT = "";
+    private static final int CONVERSION_CACHE_SLOTS = 16;
+
+    private final CompactCborCodec codec = new CompactCborCodec();
+
+    // sessionId -> (subscriptionId, or "" for the session default -> wants CBOR)
+    private final Map<String, Map<String, Boolean>> cborSubscriptions = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<Conversion> conversions = new AtomicReferenceArray<>(CONVERSION_CACHE_SLOTS);
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final DistributionSummary jsonBytes;
+    private final DistributionSummary cborBytes;
+
+    public WireFormatNegotiationInterceptor(MeterRegistry meterRegistry) {
+        this.jsonBytes = DistributionSummary.builder("chat.websocket.payload.bytes")
+                .tag("format", "json")
+                .description("Size of re-encoded outbound payloads before conversion")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.cborBytes = DistributionSummary.builder("chat.websocket.payload.bytes")
+                .tag("format", "cbor")
+                .description("Size of re-encoded outbound payloads after conversion")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        // Broker deliveries carry a subscription id; inbound SEND frames do not
+        if (messageType == SimpMessageType.MESSAGE && SimpMessageHeaderAccessor.getSubscriptionId(headers) != null) {
+            return negotiate(message);
+        }
+        if (messageType == SimpMessageType.DISCONNECT) {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+            if (sessionId != null) {
+                cborSubscriptions.remove(sessionId);
+            }
+            return message;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getCommand() != null) {
+            recordAccept(accessor);
+        }
+        return message;
+    }
+
+    private void recordAccept(StompHeaderAccessor accessor) {
+        String sessionId = accessor.getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> {
+                if (acceptsCbor(accessor) && isBinaryTransport(accessor)) {
+                    cborSubscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>()).put(SESSION_DEFAULT, true);
+                }
+            }
+            case SUBSCRIBE -> {
+                String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+                if (accept != null && accessor.getSubscriptionId() != null) {
+                    cborSubscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                            .put(accessor.getSubscriptionId(), acceptsCbor(accessor) && isBinaryTransport(accessor));
+                }
+            }
+            case UNSUBSCRIBE -> {
+                Map<String, Boolean> subscriptions = cborSubscriptions.get(sessionId);
+                if (subscriptions != null && accessor.getSubscriptionId() != null) {
+                    subscriptions.remove(accessor.getSubscriptionId());
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private Message<?> negotiate(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (!(message.getPayload() instanceof byte[] json)
+                || !wantsCbor(sessionId, SimpMessageHeaderAccessor.getSubscriptionId(headers))) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        MimeType contentType = accessor.getContentType();
+        if (contentType != null && !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return message;
+        }
+        try {
+            byte[] cbor = toCbor(json, headers.get(SOURCE_PAYLOAD_HEADER));
+            accessor.setContentType(CBOR_FRAME_CONTENT_TYPE);
+            accessor.removeHeader(SOURCE_PAYLOAD_HEADER);
+            return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            log.warn("Could not re-encode message for session {} as CBOR, sending JSON", sessionId, e);
+            return message;
+        }
+    }
+
+    private boolean wantsCbor(String sessionId, String subscriptionId) {
+        Map<String, Boolean> subscriptions = sessionId != null ? cborSubscriptions.get(sessionId) : null;
+        if (subscriptions == null) {
+            return false;
+        }
+        Boolean perSubscription = subscriptionId != null ? subscriptions.get(subscriptionId) : null;
+        return perSubscription != null ? perSubscription : subscriptions.getOrDefault(SESSION_DEFAULT, false);
+    }
+
+    private byte[] toCbor(byte[] json, Object source) throws IOException {
+        for (int i = 0; i < CONVERSION_CACHE_SLOTS; i++) {
+            Conversion conversion = conversions.get(i);
+            if (conversion != null && conversion.json() == json) {
+                return conversion.cbor();
+            }
+        }
+        byte[] cbor = source != null ? codec.encode(source) : codec.encodeJson(json);
+        conversions.set(Math.floorMod(nextSlot.getAndIncrement(), CONVERSION_CACHE_SLOTS), new Conversion(json, cbor));
+        jsonBytes.record(json.length);
+        cborBytes.record(cbor.length);
+        return cbor;
+    }
+
+    private static boolean acceptsCbor(StompHeaderAccessor accessor) {
+        String accept = accessor.getFirstNativeHeader(ACCEPT_HEADER);
+        if (accept == null) {
+            return false;
+        }
+        for (MimeType mimeType : MimeTypeUtils.parseMimeTypes(accept)) {
+            if (APPLICATION_CBOR.equalsTypeAndSubtype(mimeType)) {
+                return true;
+            }
+            if (MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(mimeType)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBinaryTransport(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        return attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_TRANSPORT_ATTRIBUTE));
+    }
+
+    private record Conversion(byte[] json, byte[] cbor) {
+    }
+}
@@ -0,0 +1,228 @@
+package com.chatapp.whatsapp.controller;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.entity.MessageAttachment;
+import com.chatapp.whatsapp.respository.MessageAttachmentRepository;
+import com.chatapp.whatsapp.storage.AttachmentImageProcessor;
+import com.chatapp.whatsapp.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Serves attachment bytes to conversation members.
+ *
+ * Content-addressed attachments use their SHA-256 as a strong ETag, so a matching
+ * If-None-Match is answered with 304 from the attachment row alone. Single byte ranges are
+ * honoured for seeking and resumed downloads. The body is handed to the container's sendfile
+ * support when available (Tomcat NIO), otherwise copied with {@link FileChannel#transferTo}.
+ * Pass {@code variant} to get one of the derived images from {@link AttachmentImageProcessor}.
+ * Only plain image, video and audio types are served inline; everything else is sent as an
+ * opaque download, always with nosniff and a sandboxing CSP, so an uploaded HTML or SVG file
+ * cannot run script as this origin.
+ */
+@RestController
+@RequestMapping("/api/attachments")
+@CrossOrigin(origins = "*")
+@Slf4j
+public class AttachmentController {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Stored content never changes under a given attachment id, so clients may cache it indefinitely
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    // Types a browser renders without running script; anything else (HTML, SVG, XML, ...) is a download
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/bmp",
+            "video/mp4", "video/webm", "video/ogg", "video/quicktime",
+            "audio/mpeg", "audio/mp4", "audio/aac", "audio/ogg", "audio/webm", "audio/wav", "audio/flac");
+
+    private final MessageAttachmentRepository attachmentRepository;
+    private final MembershipIndex membershipIndex;
+    private final BlobStore blobStore;
+    private final MeterRegistry meterRegistry;
+
+    public AttachmentController(MessageAttachmentRepository attachmentRepository,
+                                MembershipIndex membershipIndex,
+                                BlobStore blobStore,
+                                MeterRegistry meterRegistry) {
+        this.attachmentRepository = attachmentRepository;
+        this.membershipIndex = membershipIndex;
+        this.blobStore = blobStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @GetMapping("/{attachmentId}")
+    public void download(@PathVariable Long attachmentId,
+                         @RequestParam Long userId,
+                         @RequestParam(required = false) String variant,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<MessageAttachment> found = attachmentRepository.findLiveWithMessage(attachmentId);
+        if (found.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        MessageAttachment attachment = found.get();
+        if (!membershipIndex.isMember(attachment.getMessage().getConversationId(), userId)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        if (variant != null && (attachment.getBlobHash() == null
+                || !AttachmentImageProcessor.VARIANTS.contains(variant))) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = etagOf(attachment, variant);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        // Uploaded bytes are untrusted: never let the browser re-guess the type or run anything as this origin
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Content-Security-Policy", "sandbox; default-src 'none'; img-src 'self'; media-src 'self'");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            record("not_modified", 0);
+            return;
+        }
+
+        Path file;
+        if (variant != null) {
+            file = blobStore.variantPath(attachment.getBlobHash(), variant);
+        } else if (attachment.getBlobHash() != null) {
+            file = blobStore.pathOf(attachment.getBlobHash());
+        } else {
+            file = Paths.get(attachment.getFilePath());
+        }
+        if (!Files.isReadable(file)) {
+            log.warn("Attachment {} has no readable content at {}", attachmentId, file);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = Files.size(file);
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Multipart byteranges are not worth the complexity for media; several ranges get the whole body
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                if (length == 0 || range.getRangeStart(length) >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = length == 0 ? 0 : end - start + 1;
+        String contentType = variant != null ? "image/jpeg" : attachment.getMimeType();
+        boolean inline = contentType != null && INLINE_TYPES.contains(contentType.toLowerCase(Locale.ROOT));
+        response.setContentType(inline ? contentType : "application/octet-stream");
+        response.setContentLengthLong(count);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+                        .filename(attachment.getFileName(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString());
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The container writes the file straight from the page cache after this method returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            transfer(file, start, count, response);
+        }
+        record(response.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT ? "partial" : "full", count);
+    }
+
+    private static void transfer(Path file, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Strong validator: the content hash, or for files stored before deduplication the immutable id and size
+     */
+    private static String etagOf(MessageAttachment attachment, String variant) {
+        if (variant != null) {
+            return "\"" + attachment.getBlobHash() + "-" + variant + "\"";
+        }
+        if (attachment.getBlobHash() != null) {
+            return "\"" + attachment.getBlobHash() + "\"";
+        }
+        return "\"att-" + attachment.getId() + "-" + attachment.getFileSize() + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(String result, long bytes) {
+        meterRegistry.counter("chat.attachments.downloads", "result", result).increment();
+        if (bytes > 0) {
+            meterRegistry.counter("chat.attachments.downloaded.bytes").increment(bytes);
+        }
+    }
+}
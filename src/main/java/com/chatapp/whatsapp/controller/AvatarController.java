@@ -0,0 +1,180 @@
+package com.chatapp.whatsapp.controller;
+
+import com.chatapp.whatsapp.cache.ByteBoundedLruCache;
+import com.chatapp.whatsapp.cache.SenderProfile;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.storage.AvatarProcessor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Serves user avatars, normally one of the small square variants from {@link AvatarProcessor}.
+ *
+ * Hot avatars are held in memory in an LRU bounded by total bytes. Each file name is unique to
+ * one upload, so the name and size make a strong ETag and a matching If-None-Match is answered
+ * without reading the file. Until the variants exist the original photo is served instead, but
+ * only if it is a plain image type, and streamed from disk when too large to cache. Responses
+ * carry nosniff and a sandboxing CSP, like attachment downloads.
+ */
+@RestController
+@RequestMapping("/api/avatars")
+@CrossOrigin(origins = "*")
+public class AvatarController {
+
+    private static final String ORIGINAL = "original";
+
+    // The URL names a user, whose photo may change, so clients revalidate after a short while
+    private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5)).cachePrivate();
+
+    // Originals are served only if their bytes are a plain image; anything else (HTML, SVG, ...) is a 404
+    private static final Set<String> SERVED_TYPES = Set.of(
+            MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE);
+
+    // The same policy as attachment downloads: uploaded bytes never run as this origin
+    private static final String CONTENT_SECURITY_POLICY = "sandbox; default-src 'none'; img-src 'self'; media-src 'self'";
+
+    private final SenderProfileCache senderProfileCache;
+    private final AvatarProcessor avatarProcessor;
+    private final MeterRegistry meterRegistry;
+    private final ByteBoundedLruCache<Path, Avatar> cache;
+    private final long maxEntryBytes;
+
+    public AvatarController(SenderProfileCache senderProfileCache,
+                            AvatarProcessor avatarProcessor,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.avatars.cache.max-bytes:33554432}") long maxBytes,
+                            @Value("${app.avatars.cache.max-entry-bytes:524288}") long maxEntryBytes) {
+        this.senderProfileCache = senderProfileCache;
+        this.avatarProcessor = avatarProcessor;
+        this.meterRegistry = meterRegistry;
+        this.cache = new ByteBoundedLruCache<>(maxBytes, maxEntryBytes, avatar -> avatar.bytes().length);
+        this.maxEntryBytes = maxEntryBytes;
+
+        Gauge.builder("chat.avatars.cache.bytes", cache, ByteBoundedLruCache::weightInBytes)
+                .description("Bytes of avatar images held in memory")
+                .register(meterRegistry);
+        Gauge.builder("chat.avatars.cache.entries", cache, ByteBoundedLruCache::size)
+                .register(meterRegistry);
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<Resource> getAvatar(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = AvatarProcessor.SMALL) String size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        if (!ORIGINAL.equals(size) && !AvatarProcessor.SIZES.containsKey(size)) {
+            return ResponseEntity.badRequest().build();
+        }
+        SenderProfile profile = senderProfileCache.get(userId);
+        Path original = profile != null ? avatarProcessor.originalPath(profile.getProfileImage()) : null;
+        if (original == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Path file = original;
+        if (!ORIGINAL.equals(size)) {
+            Path variant = avatarProcessor.variantPath(profile.getProfileImage(), size);
+            if (cache.get(variant) != null || Files.isReadable(variant)) {
+                file = variant;
+            } else {
+                avatarProcessor.processAsync(profile.getProfileImage());
+                record("fallback");
+            }
+        }
+
+        Avatar avatar = cache.get(file);
+        String etag;
+        String contentType;
+        long length;
+        if (avatar != null) {
+            etag = avatar.etag();
+            contentType = avatar.contentType();
+            length = avatar.bytes().length;
+        } else {
+            if (!Files.isReadable(file)) {
+                return ResponseEntity.notFound().build();
+            }
+            contentType = file.equals(original) ? sniff(file) : MediaType.IMAGE_JPEG_VALUE;
+            if (contentType == null || !SERVED_TYPES.contains(contentType)) {
+                return ResponseEntity.notFound().build();
+            }
+            length = Files.size(file);
+            etag = "\"" + file.getFileName() + "-" + length + "\"";
+        }
+        if (matches(ifNoneMatch, etag)) {
+            record("not_modified");
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL).build();
+        }
+
+        Resource body;
+        if (avatar != null) {
+            record("hit");
+            body = new ByteArrayResource(avatar.bytes());
+        } else if (length <= maxEntryBytes) {
+            avatar = new Avatar(Files.readAllBytes(file), etag, contentType);
+            cache.put(file, avatar);
+            record("miss");
+            body = new ByteArrayResource(avatar.bytes());
+        } else {
+            // Too large to cache (typically an unprocessed original): stream it rather than buffer it
+            record("streamed");
+            body = new FileSystemResource(file);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL)
+                .header("X-Content-Type-Options", "nosniff")
+                .header("Content-Security-Policy", CONTENT_SECURITY_POLICY)
+                .contentType(MediaType.parseMediaType(contentType))
+                .contentLength(length)
+                .body(body);
+    }
+
+    /**
+     * The type recognised from the file's magic bytes; the name and the uploader's declared type are not trusted
+     */
+    private static String sniff(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return URLConnection.guessContentTypeFromStream(in);
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("chat.avatars.requests", "result", result).increment();
+    }
+
+    private record Avatar(byte[] bytes, String etag, String contentType) {
+    }
+}
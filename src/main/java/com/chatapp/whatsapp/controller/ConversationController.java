@@ -1,23 +1,31 @@
 package com.chatapp.whatsapp.controller;
 
+import com.chatapp.whatsapp.cache.PresenceRegistry;
+import com.chatapp.whatsapp.cache.ReadWatermarkIndex;
+import com.chatapp.whatsapp.cache.SenderProfile;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
 import com.chatapp.whatsapp.dto.CreateGroupRequest;
+import com.chatapp.whatsapp.dto.MessageCursorPage;
 import com.chatapp.whatsapp.dto.MessageDTO;
 import com.chatapp.whatsapp.entity.Conversation;
 import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.entity.InboxEntry;
 import com.chatapp.whatsapp.entity.Message;
-import com.chatapp.whatsapp.entity.User;
+import com.chatapp.whatsapp.entity.MessageAttachment;
 import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
 import com.chatapp.whatsapp.respository.ConversationRepository;
 import com.chatapp.whatsapp.respository.*;
-import com.chatapp.whatsapp.respository.UserRepository;
 import com.chatapp.whatsapp.service.GroupService;
+import com.chatapp.whatsapp.service.InboxService;
 import com.chatapp.whatsapp.service.MessageService;
+import com.chatapp.whatsapp.service.NameSearchService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -25,9 +33,12 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/conversations")
@@ -38,10 +49,15 @@ public class ConversationController {
 
     private final ConversationRepository conversationRepository;
     private final ConversationParticipantRepository participantRepository;
+    private final SenderProfileCache senderProfileCache;
+    private final PresenceRegistry presenceRegistry;
+    private final ReadWatermarkIndex readWatermarkIndex;
+    private final NameSearchService nameSearchService;
     private final com.chatapp.whatsapp.repository.MessageRepository messageRepository;
-    private final UserRepository userRepository;
     private final MessageService messageService;
     private final GroupService groupService;
+    private final InboxEntryRepository inboxEntryRepository;
+    private final InboxService inboxService;
 
     /**
      * NEW - Diagnostic Test Endpoint
@@ -61,56 +77,66 @@ public class ConversationController {
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
-        // ... (This method remains unchanged) ...
         try {
-            Pageable pageable = PageRequest.of(page, size, Sort.by("updatedAt").descending());
-            Page<Conversation> conversationPage = conversationRepository.findUserConversations(userId, pageable);
+            // One range scan over the user's inbox rows; ordering, last message and unread count are precomputed
+            Pageable pageable = PageRequest.of(page, size);
+            Slice<InboxEntry> inboxPage = inboxEntryRepository.findInbox(userId, pageable);
+            List<InboxEntry> entries = inboxPage.getContent();
+
+            Map<Long, List<ConversationParticipant>> participantsByConversation = new HashMap<>();
+            Set<Long> profileIds = new HashSet<>();
+            if (!entries.isEmpty()) {
+                List<Long> conversationIds = entries.stream().map(InboxEntry::getConversationId).toList();
+                for (ConversationParticipant participant : participantRepository.findByConversationIdInAndIsActiveTrue(conversationIds)) {
+                    participantsByConversation.computeIfAbsent(participant.getConversationId(), id -> new ArrayList<>())
+                            .add(participant);
+                    profileIds.add(participant.getUserId());
+                }
+                entries.stream().map(InboxEntry::getLastSenderId).filter(Objects::nonNull).forEach(profileIds::add);
+            }
+            Map<Long, SenderProfile> profiles = senderProfileCache.getAll(profileIds);
 
             List<Map<String, Object>> conversationList = new ArrayList<>();
 
-            for (Conversation conversation : conversationPage.getContent()) {
+            for (InboxEntry entry : entries) {
+                Conversation conversation = entry.getConversation();
                 Map<String, Object> conversationData = new HashMap<>();
                 conversationData.put("id", conversation.getId());
                 conversationData.put("name", conversation.getName());
                 conversationData.put("conversationType", conversation.getConversationType());
                 conversationData.put("createdAt", conversation.getCreatedAt());
                 conversationData.put("updatedAt", conversation.getUpdatedAt());
-                List<ConversationParticipant> participants = participantRepository.findByConversationIdAndIsActiveTrue(conversation.getId());
                 List<Map<String, Object>> participantList = new ArrayList<>();
-
-                for (ConversationParticipant participant : participants) {
-                    Optional<User> user = userRepository.findById(participant.getUserId());
-                    if (user.isPresent()) {
+                for (ConversationParticipant participant : participantsByConversation.getOrDefault(conversation.getId(), List.of())) {
+                    SenderProfile user = profiles.get(participant.getUserId());
+                    if (user != null) {
                         Map<String, Object> participantData = new HashMap<>();
-                        participantData.put("id", user.get().getId());
-                        participantData.put("username", user.get().getUsername());
-                        participantData.put("displayName", user.get().getDisplayName());
-                        participantData.put("isOnline", user.get().getIsOnline());
+                        participantData.put("id", user.getId());
+                        participantData.put("username", user.getUsername());
+                        participantData.put("displayName", user.getDisplayName());
+                        participantData.put("isOnline", presenceRegistry.isOnline(user.getId()));
                         participantList.add(participantData);
                     }
                 }
                 conversationData.put("participants", participantList);
-                Optional<Message> lastMessage = messageRepository.findLatestMessageInConversation(conversation.getId());
-                if (lastMessage.isPresent()) {
+                if (entry.getLastMessageId() != null) {
+                    SenderProfile sender = profiles.get(entry.getLastSenderId());
                     Map<String, Object> messageData = new HashMap<>();
-                    messageData.put("content", lastMessage.get().getContent());
-                    messageData.put("senderUsername", getUsernameById(lastMessage.get().getSenderId()));
-                    messageData.put("sentAt", lastMessage.get().getSentAt());
-                    messageData.put("messageType", lastMessage.get().getMessageType());
+                    messageData.put("content", entry.getLastMessagePreview());
+                    messageData.put("senderUsername", sender != null ? sender.getUsername() : "Unknown");
+                    messageData.put("sentAt", entry.getLastMessageAt());
+                    messageData.put("messageType", entry.getLastMessageType());
                     conversationData.put("lastMessage", messageData);
                 }
-                Long unreadCount = messageRepository.countUnreadMessages(conversation.getId(), userId);
-                conversationData.put("unreadCount", unreadCount);
+                conversationData.put("unreadCount", entry.getUnreadCount().longValue());
 
                 conversationList.add(conversationData);
             }
             Map<String, Object> response = new HashMap<>();
             response.put("conversations", conversationList);
-            response.put("currentPage", conversationPage.getNumber());
-            response.put("totalPages", conversationPage.getTotalPages());
-            response.put("totalElements", conversationPage.getTotalElements());
-            response.put("hasNext", conversationPage.hasNext());
-            response.put("hasPrevious", conversationPage.hasPrevious());
+            response.put("currentPage", inboxPage.getNumber());
+            response.put("hasNext", inboxPage.hasNext());
+            response.put("hasPrevious", inboxPage.hasPrevious());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -154,6 +180,88 @@ public class ConversationController {
     }
 
 
+    /**
+     * Get messages in a conversation with cursor (keyset) pagination.
+     * No total count is computed, so a deep page costs the same as the first one.
+     */
+    @GetMapping("/{conversationId}/messages/cursor")
+    public ResponseEntity<Object> getConversationMessagesByCursor(
+            @PathVariable Long conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            int pageSize = Math.max(1, Math.min(size, 100));
+            MessageCursorPage messages = messageService.getConversationMessagesByCursor(
+                    conversationId, before, after, pageSize);
+            return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to fetch message history for conversationId {}", conversationId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "An internal error occurred while fetching messages."));
+        }
+    }
+
+    /**
+     * "Read by N of M" for one message, answered from the in-memory read watermarks
+     */
+    @GetMapping("/{conversationId}/messages/{messageId}/read-count")
+    public ResponseEntity<Map<String, Object>> getReadCount(
+            @PathVariable Long conversationId,
+            @PathVariable Long messageId) {
+        Optional<Message> message = messageRepository.findById(messageId)
+                .filter(m -> conversationId.equals(m.getConversationId()));
+        if (message.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Long senderId = message.get().getSenderId();
+        Map<String, Object> response = new HashMap<>();
+        response.put("messageId", messageId);
+        response.put("readCount", readWatermarkIndex.readCount(conversationId, messageId, senderId));
+        response.put("audienceSize", readWatermarkIndex.audienceSize(conversationId, senderId));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Page of the members who have read a message
+     */
+    @GetMapping("/{conversationId}/messages/{messageId}/read-by")
+    public ResponseEntity<Map<String, Object>> getReadBy(
+            @PathVariable Long conversationId,
+            @PathVariable Long messageId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        Optional<Message> message = messageRepository.findById(messageId)
+                .filter(m -> conversationId.equals(m.getConversationId()));
+        if (message.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Long senderId = message.get().getSenderId();
+        int pageSize = Math.max(1, Math.min(size, 200));
+        List<Long> readerIds = readWatermarkIndex.readers(conversationId, messageId, senderId,
+                Math.max(page, 0) * pageSize, pageSize);
+        Map<Long, SenderProfile> profiles = senderProfileCache.getAll(readerIds);
+
+        List<Map<String, Object>> readers = new ArrayList<>();
+        for (Long readerId : readerIds) {
+            SenderProfile user = profiles.get(readerId);
+            Map<String, Object> readerData = new HashMap<>();
+            readerData.put("id", readerId);
+            readerData.put("username", user != null ? user.getUsername() : "Unknown");
+            readerData.put("displayName", user != null ? user.getDisplayName() : null);
+            readers.add(readerData);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("messageId", messageId);
+        response.put("readers", readers);
+        response.put("readCount", readWatermarkIndex.readCount(conversationId, messageId, senderId));
+        response.put("audienceSize", readWatermarkIndex.audienceSize(conversationId, senderId));
+        response.put("currentPage", page);
+        return ResponseEntity.ok(response);
+    }
+
     // ... a
     // All other methods like getConversation, createGroup, etc., remain here unchanged.
     // ...
@@ -173,14 +281,16 @@ public class ConversationController {
             conversationData.put("updatedAt", conversation.get().getUpdatedAt());
             List<ConversationParticipant> participants = participantRepository.findByConversationIdAndIsActiveTrue(conversationId);
             List<Map<String, Object>> participantList = new ArrayList<>();
+            Map<Long, SenderProfile> profiles = senderProfileCache.getAll(
+                    participants.stream().map(ConversationParticipant::getUserId).toList());
             for (ConversationParticipant participant : participants) {
-                Optional<User> user = userRepository.findById(participant.getUserId());
-                if (user.isPresent()) {
+                SenderProfile user = profiles.get(participant.getUserId());
+                if (user != null) {
                     Map<String, Object> participantData = new HashMap<>();
-                    participantData.put("id", user.get().getId());
-                    participantData.put("username", user.get().getUsername());
-                    participantData.put("displayName", user.get().getDisplayName());
-                    participantData.put("isOnline", user.get().getIsOnline());
+                    participantData.put("id", user.getId());
+                    participantData.put("username", user.getUsername());
+                    participantData.put("displayName", user.getDisplayName());
+                    participantData.put("isOnline", presenceRegistry.isOnline(user.getId()));
                     participantData.put("joinedAt", participant.getJoinedAt());
                     participantList.add(participantData);
                 }
@@ -236,26 +346,27 @@ public class ConversationController {
     @PutMapping("/{conversationId}/read")
     public ResponseEntity<Map<String, Object>> markConversationAsRead(
             @PathVariable Long conversationId,
-            @RequestParam Long userId) {
+            @RequestParam Long userId,
+            @RequestParam(required = false) Long upToMessageId) {
 
         try {
-            Optional<Message> latestMessage = messageRepository.findLatestMessageInConversation(conversationId);
-            if (latestMessage.isPresent()) {
-                Optional<ConversationParticipant> participant = participantRepository.findByConversationIdAndUserId(conversationId, userId);
-                if (participant.isPresent()) {
-                    participant.get().updateLastRead(latestMessage.get().getId());
-                    participantRepository.save(participant.get());
-                }
-            }
-
+            inboxService.markRead(conversationId, userId, upToMessageId);
             return ResponseEntity.ok(Map.of("message", "Conversation marked as read"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-    private String getUsernameById(Long userId) {
-        Optional<User> user = userRepository.findById(userId);
-        return user.map(User::getUsername).orElse("Unknown");
+
+    /**
+     * Unread count for one conversation, served from the user's inbox counter
+     */
+    @GetMapping("/{conversationId}/unread")
+    public ResponseEntity<Map<String, Object>> getUnreadCount(
+            @PathVariable Long conversationId,
+            @RequestParam Long userId) {
+        return ResponseEntity.ok(Map.of(
+                "conversationId", conversationId,
+                "unreadCount", inboxService.getUnreadCount(conversationId, userId)));
     }
 
     @GetMapping("/user/{userId}/search-groups")
@@ -265,8 +376,7 @@ public class ConversationController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         try {
-            Pageable pageable = PageRequest.of(page, size, Sort.by("updatedAt").descending());
-            Page<Conversation> groupPage = conversationRepository.findUserGroupsByNameContainingIgnoreCase(userId, name, pageable);
+            Page<Conversation> groupPage = nameSearchService.searchUserGroups(userId, name, page, size);
 
             List<Map<String, Object>> groupList = new ArrayList<>();
             for (Conversation conversation : groupPage.getContent()) {
@@ -289,4 +399,40 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Attachments shared in the user's conversations, by file name
+     */
+    @GetMapping("/user/{userId}/search-attachments")
+    public ResponseEntity<Map<String, Object>> searchUserAttachments(
+            @PathVariable Long userId,
+            @RequestParam String fileName,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            Page<MessageAttachment> attachmentPage = nameSearchService.searchUserAttachments(userId, fileName, page, size);
+
+            List<Map<String, Object>> attachmentList = new ArrayList<>();
+            for (MessageAttachment attachment : attachmentPage.getContent()) {
+                Map<String, Object> attachmentData = new HashMap<>();
+                attachmentData.put("attachmentId", attachment.getId());
+                attachmentData.put("messageId", attachment.getMessage().getId());
+                attachmentData.put("conversationId", attachment.getMessage().getConversationId());
+                attachmentData.put("fileName", attachment.getFileName());
+                attachmentData.put("fileSize", attachment.getFileSize());
+                attachmentData.put("mimeType", attachment.getMimeType());
+                attachmentData.put("uploadedAt", attachment.getUploadedAt());
+                attachmentList.add(attachmentData);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("attachments", attachmentList);
+            response.put("currentPage", attachmentPage.getNumber());
+            response.put("totalPages", attachmentPage.getTotalPages());
+            response.put("totalElements", attachmentPage.getTotalElements());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -2,7 +2,14 @@ package com.chatapp.whatsapp.controller;
 
 import com.chatapp.whatsapp.dto.MessageDTO;
 import com.chatapp.whatsapp.dto.UserDTO;
+import com.chatapp.whatsapp.entity.PendingAttachment;
+import com.chatapp.whatsapp.respository.UserRepository;
+import com.chatapp.whatsapp.service.AttachmentTokenService;
 import com.chatapp.whatsapp.service.MessageService;
+import com.chatapp.whatsapp.service.PrivateConversationService;
+import com.chatapp.whatsapp.service.StreamingAttachmentService;
+import com.chatapp.whatsapp.service.TypingIndicatorService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -10,7 +17,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -19,6 +29,11 @@ import java.util.List;
 public class MessageController {
 
     private final MessageService messageService;
+    private final TypingIndicatorService typingIndicatorService;
+    private final PrivateConversationService privateConversationService;
+    private final UserRepository userRepository;
+    private final StreamingAttachmentService streamingAttachmentService;
+    private final AttachmentTokenService attachmentTokenService;
 
     /**
      * Search users by username
@@ -75,16 +90,136 @@ public class MessageController {
         }
     }
 
+    /**
+     * Send an attachment parsed straight off the request body. Multipart fields senderId,
+     * conversationId and optional content must precede the file part; nothing is read through
+     * request parameters, which would make the container buffer the whole body first.
+     */
+    @PostMapping("/send/attachment/stream")
+    public ResponseEntity<?> streamAttachment(HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(streamingAttachmentService.ingest(request));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
 
     /**
-     * Send typing indicator
+     * Upload an attachment ahead of sending it; the returned token is valid for one message
+     */
+    @PostMapping("/attachments")
+    public ResponseEntity<Map<String, Object>> uploadAttachment(
+            @RequestParam Long userId,
+            @RequestParam("file") MultipartFile file) {
+        try {
+            PendingAttachment pending = attachmentTokenService.upload(userId, file);
+            Map<String, Object> response = new HashMap<>();
+            response.put("token", pending.getToken());
+            response.put("fileName", pending.getFileName());
+            response.put("mimeType", pending.getMimeType());
+            response.put("size", pending.getSizeBytes());
+            response.put("expiresAt", pending.getExpiresAt());
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Send a message carrying an attachment uploaded through {@code /attachments}
+     */
+    @PostMapping("/send/uploaded-attachment")
+    public ResponseEntity<?> sendMessageWithUploadedAttachment(
+            @RequestParam Long senderId,
+            @RequestParam Long conversationId,
+            @RequestParam String token,
+            @RequestParam(required = false) String content) {
+        try {
+            return ResponseEntity.ok(messageService.sendMessageWithUploadedAttachment(
+                    senderId, conversationId, content, token));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Full-text search over the messages of every conversation the user belongs to
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<MessageDTO>> searchMessages(
+            @RequestParam Long userId,
+            @RequestParam String q,
+            @RequestParam(required = false) Long conversationId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.max(1, Math.min(size, 100));
+        return ResponseEntity.ok(messageService.searchMessages(userId, q, conversationId, page, pageSize));
+    }
+
+    /**
+     * Edit the content of one of the user's own messages
+     */
+    @PutMapping("/{messageId}")
+    public ResponseEntity<MessageDTO> editMessage(
+            @PathVariable Long messageId,
+            @RequestParam Long userId,
+            @RequestParam String content) {
+        try {
+            return ResponseEntity.ok(messageService.editMessage(messageId, userId, content));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Delete one of the user's own messages
+     */
+    @DeleteMapping("/{messageId}")
+    public ResponseEntity<Void> deleteMessage(
+            @PathVariable Long messageId,
+            @RequestParam Long userId) {
+        try {
+            messageService.deleteMessage(messageId, userId);
+            return ResponseEntity.noContent().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Send typing indicator. Handled in memory only; pass conversationId to skip the recipient lookup.
      */
     @PostMapping("/typing")
     public ResponseEntity<Void> sendTypingIndicator(
             @RequestParam Long senderId,
-            @RequestParam String recipientUsername,
+            @RequestParam(required = false) Long conversationId,
+            @RequestParam(required = false) String recipientUsername,
             @RequestParam boolean isTyping) {
-        messageService.sendTypingIndicator(senderId, recipientUsername, isTyping);
+        Long targetConversationId = conversationId;
+        if (targetConversationId == null && recipientUsername != null) {
+            // Legacy clients: only an existing private conversation is used, one is never created for typing
+            targetConversationId = userRepository.findByUsernameAndIsActiveTrue(recipientUsername)
+                    .flatMap(recipient -> privateConversationService.findConversationId(senderId, recipient.getId()))
+                    .orElse(null);
+        }
+        if (targetConversationId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!typingIndicatorService.onTyping(targetConversationId, senderId, isTyping)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.chatapp.whatsapp.controller;
+
+import com.chatapp.whatsapp.dto.MessageDTO;
+import com.chatapp.whatsapp.entity.UploadSession;
+import com.chatapp.whatsapp.service.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Resumable chunked uploads: create a session, PUT each chunk as a raw request body at its
+ * offset with the chunk's SHA-256, then complete to send the file as a message.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class UploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> createSession(
+            @RequestParam Long userId,
+            @RequestParam Long conversationId,
+            @RequestParam String fileName,
+            @RequestParam(required = false) String mimeType,
+            @RequestParam long totalSize,
+            @RequestParam(required = false) String sha256) {
+        try {
+            UploadSession session = chunkedUploadService.createSession(
+                    userId, conversationId, fileName, mimeType, totalSize, sha256);
+            return ResponseEntity.status(HttpStatus.CREATED).body(describe(session));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getSession(
+            @PathVariable String uploadId,
+            @RequestParam Long userId) {
+        try {
+            return ResponseEntity.ok(describe(chunkedUploadService.getSession(uploadId, userId)));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Upload one chunk; the body is the raw chunk bytes and {@code checksum} their hex SHA-256
+     */
+    @PutMapping("/{uploadId}/chunks")
+    public ResponseEntity<Map<String, Object>> putChunk(
+            @PathVariable String uploadId,
+            @RequestParam Long userId,
+            @RequestParam long offset,
+            @RequestParam String checksum,
+            HttpServletRequest request) {
+        try {
+            int received = chunkedUploadService.writeChunk(uploadId, userId, offset, checksum, request.getInputStream());
+            return ResponseEntity.ok(Map.of("uploadId", uploadId, "offset", offset, "receivedChunks", received));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> complete(
+            @PathVariable String uploadId,
+            @RequestParam Long userId,
+            @RequestParam(required = false) String content) {
+        try {
+            MessageDTO message = chunkedUploadService.complete(uploadId, userId, content);
+            return ResponseEntity.ok(message);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> describe(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("conversationId", session.getConversationId());
+        response.put("fileName", session.getFileName());
+        response.put("totalSize", session.getTotalSize());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("chunkCount", session.getChunkCount());
+        response.put("missingChunks", chunkedUploadService.missingChunks(session));
+        response.put("expiresAt", session.getExpiresAt());
+        return response;
+    }
+}
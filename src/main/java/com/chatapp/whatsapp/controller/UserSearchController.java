@@ -18,10 +18,11 @@ public class UserSearchController {
     @GetMapping("/search")
     public ResponseEntity<List<UserResponse>> searchUsers(
             @RequestParam("username") String username,
+            @RequestParam(value = "currentUserId", required = false) Long currentUserId,
             Pageable pageable) {
 
         try {
-            List<UserResponse> users = authService.searchUsersByUsername(username, pageable);
+            List<UserResponse> users = authService.searchUsersByUsername(username, currentUserId, pageable);
             return ResponseEntity.ok(users);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -1,17 +1,25 @@
 package com.chatapp.whatsapp.controller;
 
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.config.StompAuthorizationInterceptor;
 import com.chatapp.whatsapp.dto.ChatMessageDTO;
 import com.chatapp.whatsapp.dto.MessageDTO;
 import com.chatapp.whatsapp.service.MessageService;
+import com.chatapp.whatsapp.service.MessageWriteBehindService;
+import com.chatapp.whatsapp.service.ReceiptService;
+import com.chatapp.whatsapp.service.TypingIndicatorService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletionException;
 
 @Controller
 @RequiredArgsConstructor
@@ -19,10 +27,15 @@ import java.time.LocalDateTime;
 public class WebSocketController {
 
     private final MessageService messageService;
+    private final MessageWriteBehindService writeBehindService;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationBroadcaster conversationBroadcaster;
+    private final TypingIndicatorService typingIndicatorService;
+    private final ReceiptService receiptService;
+    private final MembershipIndex membershipIndex;
 
     @MessageMapping("/chat.sendMessage")
-    public void sendMessage(@Payload ChatMessageDTO chatMessage) {
+    public void sendMessage(@Payload ChatMessageDTO chatMessage, SimpMessageHeaderAccessor headerAccessor) {
         log.info("=== WEBSOCKET CONTROLLER: Message Received ===");
         log.info("Payload: ConversationID={}, SenderID={}, Content='{}'",
                 chatMessage.getConversationId(), chatMessage.getSenderId(), chatMessage.getContent());
@@ -37,33 +50,34 @@ public class WebSocketController {
             // Log the full payload for debugging
             log.info("Full ChatMessageDTO: {}", chatMessage);
 
+            // A session may only send as the user it identified on CONNECT; the authorization
+            // interceptor rejects sends from sessions that did not identify themselves
+            Long sessionUserId = StompAuthorizationInterceptor.userIdOf(headerAccessor.getSessionAttributes());
+            if (sessionUserId != null && !sessionUserId.equals(chatMessage.getSenderId())) {
+                throw new SecurityException("Sender does not match the connected user");
+            }
+
+            // In write-behind mode the message is acked and broadcast once its batch commits
+            if (writeBehindService.isEnabled()) {
+                writeBehindService.submit(chatMessage).whenComplete((savedMessage, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        log.error("WRITE-BEHIND ERROR: {}", cause.getMessage());
+                        sendErrorMessage(chatMessage, "Error: " + cause.getMessage());
+                    } else {
+                        broadcastSavedMessage(savedMessage);
+                    }
+                });
+                return;
+            }
+
             // Call the service method to save the message
             log.info("Calling MessageService.saveWebSocketMessage()...");
             MessageDTO savedMessage = messageService.saveWebSocketMessage(chatMessage);
             log.info("SUCCESS: Message saved with ID: {}", savedMessage.getId());
 
-            // Prepare the response message to broadcast
-            ChatMessageDTO responseMessage = ChatMessageDTO.builder()
-                    .id(savedMessage.getId())
-                    .conversationId(savedMessage.getConversationId())
-                    .senderId(savedMessage.getSenderId())
-                    .senderUsername(savedMessage.getSenderUsername())
-                    .senderDisplayName(savedMessage.getSenderDisplayName())
-                    .content(savedMessage.getContent())
-                    .messageType(savedMessage.getMessageType())
-                    .sentAt(savedMessage.getSentAt())
-                    .status(savedMessage.getStatus())
-                    .isDeleted(savedMessage.getIsDeleted())
-                    .isEdited(savedMessage.getIsEdited())
-                    .build();
-
-            // Send the message to all subscribers of the conversation topic
-            String destination = "/topic/conversation/" + savedMessage.getConversationId();
-            log.info("Broadcasting message to destination: {}", destination);
-            messagingTemplate.convertAndSend(destination, responseMessage);
-
-            log.info("SUCCESS: Message ID {} broadcasted to conversation {}",
-                    savedMessage.getId(), savedMessage.getConversationId());
+            broadcastSavedMessage(savedMessage);
 
         } catch (IllegalArgumentException e) {
             log.error("VALIDATION ERROR: {}", e.getMessage());
@@ -83,6 +97,33 @@ public class WebSocketController {
         }
     }
 
+    /**
+     * Broadcast a persisted message to all subscribers of its conversation topic
+     */
+    private void broadcastSavedMessage(MessageDTO savedMessage) {
+        // Prepare the response message to broadcast
+        ChatMessageDTO responseMessage = ChatMessageDTO.builder()
+                .id(savedMessage.getId())
+                .conversationId(savedMessage.getConversationId())
+                .senderId(savedMessage.getSenderId())
+                .senderUsername(savedMessage.getSenderUsername())
+                .senderDisplayName(savedMessage.getSenderDisplayName())
+                .content(savedMessage.getContent())
+                .messageType(savedMessage.getMessageType())
+                .sentAt(savedMessage.getSentAt())
+                .status(savedMessage.getStatus())
+                .isDeleted(savedMessage.getIsDeleted())
+                .isEdited(savedMessage.getIsEdited())
+                .build();
+
+        // Send the message to all subscribers of the conversation topic, on every node
+        log.info("Broadcasting message to conversation: {}", savedMessage.getConversationId());
+        conversationBroadcaster.broadcast(savedMessage.getConversationId(), responseMessage);
+
+        log.info("SUCCESS: Message ID {} broadcasted to conversation {}",
+                savedMessage.getId(), savedMessage.getConversationId());
+    }
+
     /**
      * Send error message back to the sender
      */
@@ -119,28 +160,40 @@ public class WebSocketController {
         // Implementation for joining conversation
     }
 
+    /**
+     * Delivery/read acks. {@code id} is the highest message the client has received (action
+     * MESSAGE_DELIVERED) or read (action MESSAGE_READ); acks are coalesced and flushed in batches.
+     */
+    @MessageMapping("/chat.receipt")
+    public void acknowledgeReceipt(@Payload ChatMessageDTO chatMessage, SimpMessageHeaderAccessor headerAccessor) {
+        Long userId = StompAuthorizationInterceptor.userIdOf(headerAccessor.getSessionAttributes());
+        if (userId == null) {
+            userId = chatMessage.getSenderId();
+        }
+        if (chatMessage.getConversationId() == null || userId == null || chatMessage.getId() == null
+                || !membershipIndex.isMember(chatMessage.getConversationId(), userId)) {
+            return;
+        }
+        if ("MESSAGE_READ".equals(chatMessage.getAction())) {
+            receiptService.acknowledgeRead(chatMessage.getConversationId(), userId, chatMessage.getId());
+        } else {
+            receiptService.acknowledgeDelivered(chatMessage.getConversationId(), userId, chatMessage.getId());
+        }
+    }
+
     @MessageMapping("/chat.typing")
-    public void sendTypingIndicator(@Payload ChatMessageDTO chatMessage) {
-        log.info("Typing indicator from user {} in conversation {}",
+    public void sendTypingIndicator(@Payload ChatMessageDTO chatMessage, SimpMessageHeaderAccessor headerAccessor) {
+        log.debug("Typing indicator from user {} in conversation {}",
                 chatMessage.getSenderId(), chatMessage.getConversationId());
 
-        try {
-            // Create typing indicator message
-            ChatMessageDTO typingMessage = ChatMessageDTO.builder()
-                    .conversationId(chatMessage.getConversationId())
-                    .senderId(chatMessage.getSenderId())
-                    .senderUsername(chatMessage.getSenderUsername())
-                    .action("TYPING")
-                    .messageType("TYPING")
-                    .sentAt(LocalDateTime.now())
-                    .build();
-
-            // Send typing indicator to conversation participants
-            String destination = "/topic/conversation/" + chatMessage.getConversationId();
-            messagingTemplate.convertAndSend(destination, typingMessage);
-
-        } catch (Exception e) {
-            log.error("Failed to send typing indicator", e);
+        Long sessionUserId = StompAuthorizationInterceptor.userIdOf(headerAccessor.getSessionAttributes());
+        if (chatMessage.getConversationId() == null || chatMessage.getSenderId() == null
+                || (sessionUserId != null && !sessionUserId.equals(chatMessage.getSenderId()))
+                || !membershipIndex.isMember(chatMessage.getConversationId(), chatMessage.getSenderId())) {
+            return;
         }
+        // Coalesced and expired in memory; published on the conversation's /typing sub-destination
+        typingIndicatorService.onTyping(chatMessage.getConversationId(), chatMessage.getSenderId(),
+                !"STOP_TYPING".equals(chatMessage.getAction()));
     }
-}
\ No newline at end of file
+}
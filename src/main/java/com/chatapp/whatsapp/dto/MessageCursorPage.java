@@ -0,0 +1,21 @@
+package com.chatapp.whatsapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageCursorPage {
+    // Newest-first when paging backwards ("before"), oldest-first when paging forwards ("after")
+    private List<MessageDTO> messages;
+
+    // Opaque cursor to pass back as the same parameter for the next page; null when there is no more history
+    private String nextCursor;
+    private boolean hasMore;
+}
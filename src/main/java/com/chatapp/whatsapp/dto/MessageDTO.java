@@ -62,6 +62,9 @@ public class MessageDTO {
         private Long fileSize;
         private String mimeType;
         private LocalDateTime uploadedAt;
+        private Integer width;
+        private Integer height;
+        private String blurhash;
     }
 
     // Factory method for creating text messages
@@ -0,0 +1,28 @@
+package com.chatapp.whatsapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Batch of presence changes for one recipient, sent to /topic/presence/{recipientId}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceUpdateDTO {
+    private List<PresenceDelta> changes;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PresenceDelta {
+        private Long userId;
+        private Boolean isOnline;
+    }
+}
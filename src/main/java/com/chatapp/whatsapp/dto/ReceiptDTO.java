@@ -0,0 +1,20 @@
+package com.chatapp.whatsapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A participant's delivery/read watermarks, published on /topic/conversation/{id}/receipts when they advance
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptDTO {
+    private Long conversationId;
+    private Long userId;
+    private Long lastDeliveredMessageId;
+    private Long lastReadMessageId;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.whatsapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingIndicatorDTO {
+    private Long conversationId;
+    private Long senderId;
+    private String senderUsername;
+    private Boolean isTyping;
+}
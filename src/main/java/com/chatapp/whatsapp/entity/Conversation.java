@@ -34,6 +34,10 @@ public class Conversation {
     @Column(name = "created_by", nullable = false)
     private Long createdBy;
 
+    // Canonical "minUserId:maxUserId" key for private conversations, unique so each pair has one conversation
+    @Column(name = "private_pair_key", unique = true, length = 50)
+    private String privatePairKey;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -83,6 +87,11 @@ public class Conversation {
         return "GROUP".equals(conversationType);
     }
 
+    // Build the order-independent pair key for a private conversation between two users
+    public static String privatePairKey(Long userId1, Long userId2) {
+        return Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    }
+
     // Get active participants count
     public long getActiveParticipantsCount() {
         return participants.stream()
@@ -52,6 +52,10 @@ public class ConversationParticipant {
     @Column(name = "last_read_at")
     private LocalDateTime lastReadAt;
 
+    // Highest message id acknowledged as delivered to any of the user's devices
+    @Column(name = "last_delivered_message_id")
+    private Long lastDeliveredMessageId;
+
     @Column(name = "is_muted")
     @Builder.Default
     private Boolean isMuted = false;
@@ -107,9 +111,29 @@ public class ConversationParticipant {
         return LocalDateTime.now().isBefore(mutedUntil);
     }
 
-    public void updateLastRead(Long messageId) {
+    /**
+     * Move the read watermark forward; returns false (and changes nothing) if it would move backwards
+     */
+    public boolean updateLastRead(Long messageId) {
+        if (messageId == null || hasReadMessage(messageId)) {
+            return false;
+        }
         this.lastReadMessageId = messageId;
         this.lastReadAt = LocalDateTime.now();
+        // Reading a message implies it was delivered
+        updateLastDelivered(messageId);
+        return true;
+    }
+
+    /**
+     * Move the delivery watermark forward; returns false if it would move backwards
+     */
+    public boolean updateLastDelivered(Long messageId) {
+        if (messageId == null || (lastDeliveredMessageId != null && lastDeliveredMessageId >= messageId)) {
+            return false;
+        }
+        this.lastDeliveredMessageId = messageId;
+        return true;
     }
 
     public void setRole(String newRole) {
@@ -0,0 +1,62 @@
+package com.chatapp.whatsapp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized row of a user's conversation list (one per active participant).
+ * Maintained incrementally by {@link com.chatapp.whatsapp.service.InboxService} so the inbox
+ * can be read as one range scan over (user_id, activity_at).
+ */
+@Entity
+@Table(name = "user_inbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "conversation_id"}),
+        indexes = @Index(name = "idx_user_inbox_user_activity", columnList = "user_id, activity_at DESC, conversation_id"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", insertable = false, updatable = false)
+    private Conversation conversation;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_preview", length = 200)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_type")
+    private String lastMessageType;
+
+    @Column(name = "last_sender_id")
+    private Long lastSenderId;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    // Last message time, or the time the user joined for conversations without messages
+    @Column(name = "activity_at", nullable = false)
+    private LocalDateTime activityAt;
+
+    @Column(name = "unread_count", nullable = false)
+    @Builder.Default
+    private Integer unreadCount = 0;
+}
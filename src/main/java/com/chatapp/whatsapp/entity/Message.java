@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        // Keyset pagination over a conversation's history walks this index in either direction
+        @Index(name = "idx_messages_conversation_id_id", columnList = "conversation_id, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -32,6 +32,10 @@ public class MessageAttachment {
     @Column(name = "file_path", nullable = false, length = 500)
     private String filePath;
 
+    // SHA-256 of the content in the blob store; null for files stored before deduplication
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
     @Column(name = "file_size", nullable = false)
     private Long fileSize;
 
@@ -61,6 +65,10 @@ public class MessageAttachment {
     @Column(name = "compression_quality")
     private Integer compressionQuality;
 
+    // Compact BlurHash placeholder clients can paint before any image bytes arrive
+    @Column(name = "blurhash", length = 64)
+    private String blurhash;
+
     // Helper methods
     public boolean isImage() {
         return mimeType != null && mimeType.startsWith("image/");
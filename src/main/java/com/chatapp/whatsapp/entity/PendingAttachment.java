@@ -0,0 +1,48 @@
+package com.chatapp.whatsapp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An uploaded attachment not yet referenced by any message. The token is handed to the
+ * uploader, who claims it when sending; the row holds one reference on the blob until then.
+ */
+@Entity
+@Table(name = "pending_attachments",
+        indexes = @Index(name = "idx_pending_attachments_expires_at", columnList = "expires_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingAttachment {
+
+    @Id
+    @Column(name = "token", length = 36)
+    private String token;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "blob_hash", nullable = false, length = 64)
+    private String blobHash;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
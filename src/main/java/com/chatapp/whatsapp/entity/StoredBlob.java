@@ -0,0 +1,43 @@
+package com.chatapp.whatsapp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One unique piece of attachment content, keyed by the hex SHA-256 of its bytes.
+ * {@code refCount} is the number of attachment rows pointing at it; rows and files are
+ * maintained by {@link com.chatapp.whatsapp.storage.BlobStore}, which collects blobs
+ * whose count has stayed at zero past a grace period.
+ */
+@Entity
+@Table(name = "stored_blobs",
+        indexes = @Index(name = "idx_stored_blobs_unreferenced", columnList = "ref_count, updated_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    @Builder.Default
+    private Integer refCount = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Last time the blob was written, acquired or released; garbage collection waits for this to age
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,71 @@
+package com.chatapp.whatsapp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable chunked upload in progress. Chunks have a fixed size (the last may be shorter)
+ * and land at their offset in {@code tempPath}; {@code receivedChunks} is the BitSet of
+ * chunk indexes that arrived with a valid checksum, sized for every chunk up front so that nodes
+ * can set and clear single bits in place. {@code activeWriters} counts chunk writes in flight.
+ */
+@Entity
+@Table(name = "upload_sessions",
+        indexes = @Index(name = "idx_upload_sessions_expires_at", columnList = "expires_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    // Optional SHA-256 of the whole file declared by the client, checked on completion
+    @Column(name = "expected_sha256", length = 64)
+    private String expectedSha256;
+
+    @Column(name = "temp_path", nullable = false, length = 500)
+    private String tempPath;
+
+    @Column(name = "received_chunks")
+    private byte[] receivedChunks;
+
+    @Column(name = "active_writers", columnDefinition = "integer default 0 not null")
+    @Builder.Default
+    private Integer activeWriters = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public int getChunkCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+}
@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 @Builder
 @Entity
 @Table(name = "users")
+@EntityListeners(UserEntityListener.class)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -0,0 +1,66 @@
+package com.chatapp.whatsapp.entity;
+
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.cache.UserDirectoryIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps in-memory user caches coherent with the users table.
+ * Resolved lazily because Hibernate creates listeners while the repositories are still being wired.
+ * The lifecycle callbacks fire at flush, before commit, so cache changes are deferred until the
+ * transaction commits; a rolled-back change never reaches the caches, and a reload triggered by the
+ * invalidation cannot read the old row back in.
+ */
+@Component
+public class UserEntityListener {
+
+    private final ObjectProvider<SenderProfileCache> senderProfileCache;
+    private final ObjectProvider<UserDirectoryIndex> userDirectoryIndex;
+
+    public UserEntityListener(ObjectProvider<SenderProfileCache> senderProfileCache,
+                              ObjectProvider<UserDirectoryIndex> userDirectoryIndex) {
+        this.senderProfileCache = senderProfileCache;
+        this.userDirectoryIndex = userDirectoryIndex;
+    }
+
+    @PostPersist
+    public void onUserCreated(User user) {
+        afterCommit(() -> userDirectoryIndex.ifAvailable(index -> index.put(user)));
+    }
+
+    @PostUpdate
+    public void onUserUpdated(User user) {
+        afterCommit(() -> {
+            senderProfileCache.ifAvailable(cache -> cache.invalidate(user.getId()));
+            userDirectoryIndex.ifAvailable(index -> index.put(user));
+        });
+    }
+
+    @PostRemove
+    public void onUserRemoved(User user) {
+        Long userId = user.getId();
+        afterCommit(() -> {
+            senderProfileCache.ifAvailable(cache -> cache.invalidate(userId));
+            userDirectoryIndex.ifAvailable(index -> index.remove(userId));
+        });
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
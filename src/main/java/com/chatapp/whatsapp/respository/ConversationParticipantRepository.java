@@ -24,6 +24,12 @@ public interface ConversationParticipantRepository extends JpaRepository<Convers
     @Query("SELECT cp FROM ConversationParticipant cp WHERE cp.conversation.id = :conversationId AND cp.isActive = true")
     List<ConversationParticipant> findByConversationIdAndIsActiveTrue(@Param("conversationId") Long conversationId);
 
+    /**
+     * Find active participants of several conversations at once
+     */
+    @Query("SELECT cp FROM ConversationParticipant cp WHERE cp.conversation.id IN :conversationIds AND cp.isActive = true")
+    List<ConversationParticipant> findByConversationIdInAndIsActiveTrue(@Param("conversationIds") java.util.Collection<Long> conversationIds);
+
     /**
      * Find conversations by user ID
      */
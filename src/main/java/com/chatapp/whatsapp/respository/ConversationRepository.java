@@ -14,6 +14,18 @@ import java.util.Optional;
 @Repository
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
 
+    /**
+     * Substring or fuzzy match on the group name; both operators are served by the pg_trgm GIN
+     * index on LOWER(name) created by DatabaseIndexInitializer
+     */
+    String GROUP_NAME_TRIGRAM_MATCH =
+            "(LOWER(c.name) LIKE CONCAT('%', LOWER(:name), '%') OR LOWER(c.name) % LOWER(:name))";
+
+    String USER_GROUPS_BY_NAME_SIMILARITY_FROM =
+            "FROM conversations c JOIN conversation_participants p ON p.conversation_id = c.id " +
+            "WHERE p.user_id = :userId AND p.is_active = true " +
+            "AND c.conversation_type = 'GROUP' AND " + GROUP_NAME_TRIGRAM_MATCH;
+
     /**
      * Find private conversation between two users
      */
@@ -28,6 +40,12 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     Optional<Conversation> findPrivateConversationBetweenUsers(@Param("user1Id") Long user1Id,
                                                                @Param("user2Id") Long user2Id);
 
+    /**
+     * Find private conversation id by its canonical pair key (single unique-index probe)
+     */
+    @Query("SELECT c.id FROM Conversation c WHERE c.privatePairKey = :pairKey")
+    Optional<Long> findIdByPrivatePairKey(@Param("pairKey") String pairKey);
+
     /**
      * Find all conversations for a user
      */
@@ -99,4 +117,14 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
             "AND p.isActive = true ORDER BY c.updatedAt DESC")
     Page<Conversation> findUserGroupsByNameContainingIgnoreCase(@Param("userId") Long userId, @Param("name") String name, Pageable pageable);
 
+    /**
+     * The user's groups whose name contains or resembles the search term, most similar first (requires pg_trgm).
+     * Pass an unsorted Pageable; the similarity order is part of the query.
+     */
+    @Query(value = "SELECT c.* " + USER_GROUPS_BY_NAME_SIMILARITY_FROM +
+            " ORDER BY similarity(LOWER(c.name), LOWER(:name)) DESC, c.updated_at DESC",
+            countQuery = "SELECT COUNT(*) " + USER_GROUPS_BY_NAME_SIMILARITY_FROM,
+            nativeQuery = true)
+    Page<Conversation> searchUserGroupsByNameSimilarity(@Param("userId") Long userId, @Param("name") String name, Pageable pageable);
+
 }
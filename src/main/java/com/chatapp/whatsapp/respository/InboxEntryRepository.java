@@ -0,0 +1,34 @@
+package com.chatapp.whatsapp.respository;
+
+import com.chatapp.whatsapp.entity.InboxEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InboxEntryRepository extends JpaRepository<InboxEntry, Long> {
+
+    /**
+     * Page of a user's inbox, most recent activity first, with the conversation row joined in.
+     * A slice fetches one extra row to answer hasNext instead of counting the whole inbox per page
+     */
+    @Query("SELECT i FROM InboxEntry i JOIN FETCH i.conversation " +
+            "WHERE i.userId = :userId " +
+            "ORDER BY i.activityAt DESC, i.conversationId DESC")
+    Slice<InboxEntry> findInbox(@Param("userId") Long userId, Pageable pageable);
+
+    Optional<InboxEntry> findByUserIdAndConversationId(Long userId, Long conversationId);
+
+    /**
+     * Remove the inbox row when the user leaves the conversation
+     */
+    @Modifying
+    @Query("DELETE FROM InboxEntry i WHERE i.userId = :userId AND i.conversationId = :conversationId")
+    int deleteEntry(@Param("userId") Long userId, @Param("conversationId") Long conversationId);
+}
@@ -1,6 +1,8 @@
 package com.chatapp.whatsapp.respository;
 
 import com.chatapp.whatsapp.entity.MessageAttachment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,12 +14,30 @@ import java.util.Optional;
 @Repository
 public interface MessageAttachmentRepository extends JpaRepository<MessageAttachment, Long> {
 
+    /**
+     * Attachments of live messages in the user's active conversations whose file name contains or
+     * resembles the search term; both operators are served by the pg_trgm GIN index on LOWER(file_name)
+     */
+    String USER_ATTACHMENTS_BY_FILE_NAME_SIMILARITY_FROM =
+            "FROM message_attachments ma JOIN messages m ON m.id = ma.message_id " +
+            "JOIN conversation_participants p ON p.conversation_id = m.conversation_id " +
+            "WHERE p.user_id = :userId AND p.is_active = true AND m.is_deleted = false " +
+            "AND (LOWER(ma.file_name) LIKE CONCAT('%', LOWER(:fileName), '%') " +
+            "OR LOWER(ma.file_name) % LOWER(:fileName))";
+
     /**
      * Find attachments by message ID - FIXED
      */
     @Query("SELECT ma FROM MessageAttachment ma WHERE ma.message.id = :messageId")
     List<MessageAttachment> findByMessageId(@Param("messageId") Long messageId);
 
+    /**
+     * Attachment with its message, unless the message has been deleted
+     */
+    @Query("SELECT ma FROM MessageAttachment ma JOIN FETCH ma.message m " +
+            "WHERE ma.id = :attachmentId AND m.isDeleted = false")
+    Optional<MessageAttachment> findLiveWithMessage(@Param("attachmentId") Long attachmentId);
+
     /**
      * Find attachment by file path
      */
@@ -70,6 +90,28 @@ public interface MessageAttachmentRepository extends JpaRepository<MessageAttach
             "ORDER BY ma.uploadedAt DESC")
     List<MessageAttachment> findByFileNameContainingIgnoreCase(@Param("fileName") String fileName);
 
+    /**
+     * Attachments in the user's conversations whose file name contains the search term
+     */
+    @Query("SELECT ma FROM MessageAttachment ma JOIN ma.message m JOIN m.conversation c JOIN c.participants p " +
+            "WHERE p.userId = :userId AND p.isActive = true AND m.isDeleted = false " +
+            "AND LOWER(ma.fileName) LIKE LOWER(CONCAT('%', :fileName, '%'))")
+    Page<MessageAttachment> findUserAttachmentsByFileNameContainingIgnoreCase(@Param("userId") Long userId,
+                                                                             @Param("fileName") String fileName,
+                                                                             Pageable pageable);
+
+    /**
+     * Attachments in the user's conversations whose file name contains or resembles the search term,
+     * most similar first (requires pg_trgm). Pass an unsorted Pageable; the similarity order is part of the query.
+     */
+    @Query(value = "SELECT ma.* " + USER_ATTACHMENTS_BY_FILE_NAME_SIMILARITY_FROM +
+            " ORDER BY similarity(LOWER(ma.file_name), LOWER(:fileName)) DESC, ma.uploaded_at DESC",
+            countQuery = "SELECT COUNT(*) " + USER_ATTACHMENTS_BY_FILE_NAME_SIMILARITY_FROM,
+            nativeQuery = true)
+    Page<MessageAttachment> searchUserAttachmentsByFileNameSimilarity(@Param("userId") Long userId,
+                                                                     @Param("fileName") String fileName,
+                                                                     Pageable pageable);
+
     /**
      * Find attachments larger than specified size
      */
@@ -27,6 +27,40 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      */
     // Page<Message> findByConversationIdAndIsDeletedFalse(Long conversationId, Pageable pageable);
 
+    /**
+     * Keyset page: the newest messages of a conversation.
+     * Returned as a List so no COUNT query is issued; pass PageRequest.of(0, limit) as the page.
+     */
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.conversation.id = :conversationId " +
+            "AND m.isDeleted = false " +
+            "ORDER BY m.id DESC")
+    List<Message> findLatestPage(@Param("conversationId") Long conversationId, Pageable limit);
+
+    /**
+     * Keyset page: newest messages first, strictly older than a message id
+     */
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.conversation.id = :conversationId " +
+            "AND m.isDeleted = false " +
+            "AND m.id < :beforeId " +
+            "ORDER BY m.id DESC")
+    List<Message> findPageBefore(@Param("conversationId") Long conversationId,
+                                 @Param("beforeId") Long beforeId,
+                                 Pageable limit);
+
+    /**
+     * Keyset page: oldest messages first, strictly newer than a message id
+     */
+    @Query("SELECT m FROM Message m " +
+            "WHERE m.conversation.id = :conversationId " +
+            "AND m.isDeleted = false " +
+            "AND m.id > :afterId " +
+            "ORDER BY m.id ASC")
+    List<Message> findPageAfter(@Param("conversationId") Long conversationId,
+                                @Param("afterId") Long afterId,
+                                Pageable limit);
+
     /**
      * Find messages by sender
      */
@@ -43,6 +77,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findByConversationIdAndMessageType(@Param("conversationId") Long conversationId,
                                                      @Param("messageType") String messageType);
 
+    /**
+     * Unindexable substring scan of one conversation; use MessageSearchService for search requests
+     */
+    @Deprecated
     @Query("SELECT m FROM Message m " +
             "WHERE m.conversation.id = :conversationId " +
             "AND LOWER(m.content) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
@@ -67,10 +105,17 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
             "LIMIT 1")
     Optional<Message> findLatestMessageInConversation(@Param("conversationId") Long conversationId);
 
-    @Query("SELECT COUNT(m) FROM Message m " +
-            "WHERE m.conversation.id = :conversationId " +
+    /**
+     * Count messages from others after the user's read watermark.
+     * Scans every unread message; use the counter on the user's inbox row for request paths.
+     */
+    @Deprecated
+    @Query("SELECT COUNT(m) FROM Message m, ConversationParticipant cp " +
+            "WHERE cp.conversation.id = :conversationId " +
+            "AND cp.userId = :userId " +
+            "AND m.conversation.id = :conversationId " +
+            "AND m.id > COALESCE(cp.lastReadMessageId, 0) " +
             "AND m.senderId != :userId " +
-            "AND m.status != 'read' " +
             "AND m.isDeleted = false")
     Long countUnreadMessages(@Param("conversationId") Long conversationId,
                              @Param("userId") Long userId);
@@ -90,6 +135,10 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findMessagesAfter(@Param("conversationId") Long conversationId,
                                     @Param("afterTime") LocalDateTime afterTime);
 
+    /**
+     * Per-row status is no longer maintained; status is derived from participant watermarks by ReceiptService
+     */
+    @Deprecated
     @Modifying
     @Transactional
     @Query("UPDATE Message m SET m.status = :status WHERE m.id = :messageId")
@@ -97,8 +146,9 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     @Modifying
     @Transactional
-    @Query("UPDATE Message m SET m.isDeleted = true WHERE m.id = :messageId")
-    void markMessageAsDeleted(@Param("messageId") Long messageId);
+    @Query("UPDATE Message m SET m.isDeleted = true WHERE m.id = :messageId " +
+           "AND (m.isDeleted = false OR m.isDeleted IS NULL)")
+    int markMessageAsDeleted(@Param("messageId") Long messageId);
 
     @Query("SELECT m FROM Message m " +
             "WHERE m.conversation.id = :conversationId " +
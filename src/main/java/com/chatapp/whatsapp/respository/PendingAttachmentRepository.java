@@ -0,0 +1,28 @@
+package com.chatapp.whatsapp.respository;
+
+import com.chatapp.whatsapp.entity.PendingAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PendingAttachmentRepository extends JpaRepository<PendingAttachment, String> {
+
+    List<PendingAttachment> findTop500ByExpiresAtBefore(LocalDateTime cutoff);
+
+    /**
+     * Delete the row if it is still live for this user; 0 means another request claimed or swept it first
+     */
+    @Modifying
+    @Query("DELETE FROM PendingAttachment p WHERE p.token = :token AND p.userId = :userId AND p.expiresAt > :now")
+    int claim(@Param("token") String token, @Param("userId") Long userId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM PendingAttachment p WHERE p.token = :token")
+    int deleteByToken(@Param("token") String token);
+}
@@ -0,0 +1,51 @@
+package com.chatapp.whatsapp.respository;
+
+import com.chatapp.whatsapp.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    List<UploadSession> findTop500ByExpiresAtBefore(LocalDateTime cutoff);
+
+    /**
+     * Register a writer for one chunk and mark the chunk missing until its bytes verify, in one
+     * statement; 0 means the session is gone or already claimed for completion
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE upload_sessions SET received_chunks = set_bit(received_chunks, :chunkIndex, 0), " +
+            "active_writers = active_writers + 1 WHERE id = :id AND user_id = :userId", nativeQuery = true)
+    int beginChunkWrite(@Param("id") String id, @Param("userId") Long userId, @Param("chunkIndex") int chunkIndex);
+
+    /**
+     * Deregister a writer, recording its chunk as received if it verified
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE upload_sessions SET active_writers = active_writers - 1, " +
+            "received_chunks = CASE WHEN :verified THEN set_bit(received_chunks, :chunkIndex, 1) " +
+            "ELSE received_chunks END WHERE id = :id", nativeQuery = true)
+    int endChunkWrite(@Param("id") String id, @Param("chunkIndex") int chunkIndex, @Param("verified") boolean verified);
+
+    @Query(value = "SELECT received_chunks FROM upload_sessions WHERE id = :id", nativeQuery = true)
+    byte[] findReceivedChunks(@Param("id") String id);
+
+    /**
+     * Take the session for completion once every chunk is received and no chunk write is in flight;
+     * 0 means it is incomplete, still being written, or another request already claimed it
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM upload_sessions WHERE id = :id AND user_id = :userId " +
+            "AND active_writers = 0 AND received_chunks = :allReceived", nativeQuery = true)
+    int claim(@Param("id") String id, @Param("userId") Long userId, @Param("allReceived") byte[] allReceived);
+}
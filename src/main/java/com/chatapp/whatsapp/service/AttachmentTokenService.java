@@ -0,0 +1,137 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.entity.PendingAttachment;
+import com.chatapp.whatsapp.respository.PendingAttachmentRepository;
+import com.chatapp.whatsapp.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Upload-first attachments.
+ *
+ * The file is written into the blob store with no transaction open, then a pending row taking
+ * one reference on the blob is inserted in a short transaction and its token returned. Sending
+ * the message claims the token inside the message's own metadata-only transaction, so a slow
+ * upload never holds a pooled connection. Tokens not claimed before they expire are swept and
+ * their reference released, leaving the blob to the store's garbage collection.
+ */
+@Service
+@Slf4j
+public class AttachmentTokenService {
+
+    private final PendingAttachmentRepository pendingAttachmentRepository;
+    private final BlobStore blobStore;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.uploads.tokens.max-file-size:10485760}")
+    private long maxFileSize;
+
+    @Value("${app.uploads.tokens.ttl:PT1H}")
+    private Duration ttl;
+
+    public AttachmentTokenService(PendingAttachmentRepository pendingAttachmentRepository,
+                                  BlobStore blobStore,
+                                  MeterRegistry meterRegistry,
+                                  PlatformTransactionManager transactionManager) {
+        this.pendingAttachmentRepository = pendingAttachmentRepository;
+        this.blobStore = blobStore;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Store the file and return a pending attachment whose token the uploader can send with
+     */
+    public PendingAttachment upload(Long userId, MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (file.getSize() > maxFileSize) {
+            throw new IllegalArgumentException("File size exceeds " + maxFileSize + " bytes");
+        }
+
+        BlobStore.StoredContent blob;
+        try (InputStream upload = file.getInputStream()) {
+            blob = blobStore.write(upload, maxFileSize);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        PendingAttachment pending = PendingAttachment.builder()
+                .token(UUID.randomUUID().toString())
+                .userId(userId)
+                .blobHash(blob.hash())
+                .sizeBytes(blob.size())
+                .fileName(file.getOriginalFilename() != null ? file.getOriginalFilename() : "attachment")
+                .mimeType(file.getContentType())
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build();
+        PendingAttachment saved = transactionTemplate.execute(status -> {
+            blobStore.acquire(blob.hash());
+            return pendingAttachmentRepository.save(pending);
+        });
+        meterRegistry.counter("chat.uploads.tokens", "event", "issued").increment();
+        return saved;
+    }
+
+    /**
+     * Consume a token within the caller's transaction. The token's blob reference is released,
+     * so the attachment row saved in the same transaction must take its own.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public PendingAttachment claim(String token, Long userId) {
+        PendingAttachment pending = pendingAttachmentRepository.findById(token)
+                .filter(p -> p.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new NoSuchElementException("Attachment token not found or expired"));
+        if (!pending.getUserId().equals(userId)) {
+            throw new SecurityException("Attachment token belongs to another user");
+        }
+        if (pendingAttachmentRepository.claim(token, userId, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("Attachment token already used");
+        }
+        blobStore.release(pending.getBlobHash());
+        meterRegistry.counter("chat.uploads.tokens", "event", "claimed").increment();
+        return pending;
+    }
+
+    /**
+     * Drop tokens past their expiry and release their blob references
+     */
+    @Scheduled(fixedDelayString = "${app.uploads.tokens.sweep-interval-ms:300000}")
+    public void sweepExpired() {
+        List<PendingAttachment> expired;
+        do {
+            expired = pendingAttachmentRepository.findTop500ByExpiresAtBefore(LocalDateTime.now());
+            for (PendingAttachment pending : expired) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        // A concurrent claim may have won; only the deleting side releases
+                        if (pendingAttachmentRepository.deleteByToken(pending.getToken()) > 0) {
+                            blobStore.release(pending.getBlobHash());
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    log.warn("Could not expire attachment token {}: {}", pending.getToken(), e.getMessage());
+                }
+            }
+            meterRegistry.counter("chat.uploads.tokens", "event", "expired").increment(expired.size());
+        } while (expired.size() == 500);
+    }
+}
@@ -1,10 +1,12 @@
 package com.chatapp.whatsapp.service;
 
+import com.chatapp.whatsapp.cache.UserDirectoryIndex;
 import com.chatapp.whatsapp.dto.SignUpRequest;
 import com.chatapp.whatsapp.dto.LoginRequest;
 import com.chatapp.whatsapp.dto.UserResponse;
 import com.chatapp.whatsapp.entity.User;
 import com.chatapp.whatsapp.respository.UserRepository;
+import com.chatapp.whatsapp.storage.AvatarProcessor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -12,6 +14,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -24,6 +28,12 @@ public class AuthService {
     @Autowired
     private FileUploadService fileUploadService;
 
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
+
+    @Autowired
+    private AvatarProcessor avatarProcessor;
+
     // Existing methods...
     public UserResponse signUp(SignUpRequest request, MultipartFile userPhoto) throws IOException {
         // Check if username already exists
@@ -64,6 +74,11 @@ public class AuthService {
         // Save user
         User savedUser = userRepository.save(user);
 
+        // Small and medium avatar variants are generated in the background
+        if (photoPath != null) {
+            avatarProcessor.processAsync(photoPath);
+        }
+
         // Return user response
         return mapToUserResponse(savedUser);
     }
@@ -103,6 +118,22 @@ public class AuthService {
 
     // NEW: User search functionality
     public List<UserResponse> searchUsersByUsername(String username, Pageable pageable) {
+        return searchUsersByUsername(username, null, pageable);
+    }
+
+    /**
+     * Typeahead search; answered from the in-memory directory index once it is loaded,
+     * ranking users who share a conversation with {@code currentUserId} first
+     */
+    public List<UserResponse> searchUsersByUsername(String username, Long currentUserId, Pageable pageable) {
+        if (userDirectoryIndex.isLoaded()) {
+            int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE);
+            List<Long> ids = userDirectoryIndex.search(username, currentUserId, offset + pageable.getPageSize());
+            List<Long> page = ids.subList(Math.min(offset, ids.size()), ids.size());
+            return loadInOrder(page).stream()
+                    .map(this::mapToUserResponse)
+                    .collect(Collectors.toList());
+        }
         List<User> users = userRepository.findByUsernameContainingIgnoreCaseAndIsActiveTrue(username, pageable);
         return users.stream()
                 .map(this::mapToUserResponse)
@@ -125,6 +156,15 @@ public class AuthService {
     }
 
     // Helper method to map User entity to UserResponse DTO
+    private List<User> loadInOrder(List<Long> ids) {
+        Map<Long, User> byId = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     private UserResponse mapToUserResponse(User user) {
         UserResponse response = new UserResponse();
         response.setId(user.getId());
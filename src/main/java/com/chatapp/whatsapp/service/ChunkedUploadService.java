@@ -0,0 +1,280 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.dto.MessageDTO;
+import com.chatapp.whatsapp.entity.UploadSession;
+import com.chatapp.whatsapp.respository.UploadSessionRepository;
+import com.chatapp.whatsapp.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Resumable uploads for large attachments.
+ *
+ * A session fixes the file size and chunk size up front and preallocates nothing but a sparse
+ * file. Each chunk is streamed from the request body straight to its offset with a positional
+ * {@link FileChannel} write while its SHA-256 is computed, so chunks can arrive in any order, in
+ * parallel, and be retried after a dropped connection. Only chunks whose checksum matched are
+ * recorded. Completing the session hashes the assembled file, moves it into the blob store and
+ * sends it as a message. Sessions not completed before they expire are swept.
+ *
+ * The received-chunk bits live only in the session row and each write flips its own bit with
+ * {@code set_bit}, so chunks of one upload may go to different nodes. A write registers itself on
+ * the row before touching the file and deregisters once its bit is settled; completion claims the
+ * row only when every bit is set and no write is registered, and no write can register after that.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final MembershipIndex membershipIndex;
+    private final BlobStore blobStore;
+    private final MessageService messageService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.uploads.chunked.chunk-size:4194304}")
+    private int chunkSize;
+
+    @Value("${app.uploads.chunked.max-file-size:2147483648}")
+    private long maxFileSize;
+
+    @Value("${app.uploads.chunked.ttl:PT24H}")
+    private Duration ttl;
+
+    public ChunkedUploadService(UploadSessionRepository sessionRepository,
+                                MembershipIndex membershipIndex,
+                                BlobStore blobStore,
+                                MessageService messageService,
+                                MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+        this.membershipIndex = membershipIndex;
+        this.blobStore = blobStore;
+        this.messageService = messageService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public UploadSession createSession(Long userId, Long conversationId, String fileName, String mimeType,
+                                       long totalSize, String expectedSha256) throws IOException {
+        if (!membershipIndex.isMember(conversationId, userId)) {
+            throw new SecurityException("Not a member of conversation " + conversationId);
+        }
+        if (totalSize <= 0 || totalSize > maxFileSize) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxFileSize + " bytes");
+        }
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        if (expectedSha256 != null && !expectedSha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("sha256 must be 64 hex characters");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path file = blobStore.newSessionFile(id);
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(id)
+                .userId(userId)
+                .conversationId(conversationId)
+                .fileName(fileName)
+                .mimeType(mimeType)
+                .totalSize(totalSize)
+                .chunkSize(chunkSize)
+                .expectedSha256(expectedSha256 != null ? expectedSha256.toLowerCase() : null)
+                .tempPath(file.toString())
+                .receivedChunks(new byte[(int) ((totalSize + chunkSize - 1) / chunkSize + 7) / 8])
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build();
+        meterRegistry.counter("chat.uploads.chunked.sessions", "event", "created").increment();
+        return sessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String uploadId, Long userId) {
+        UploadSession session = sessionRepository.findById(uploadId)
+                .filter(s -> s.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new NoSuchElementException("Upload not found or expired"));
+        if (!session.getUserId().equals(userId)) {
+            throw new SecurityException("Upload belongs to another user");
+        }
+        return session;
+    }
+
+    /**
+     * Write one chunk at {@code offset}. Returns the number of chunks received so far.
+     */
+    public int writeChunk(String uploadId, Long userId, long offset, String checksum, InputStream body)
+            throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        if (offset < 0 || offset >= session.getTotalSize() || offset % session.getChunkSize() != 0) {
+            throw new IllegalArgumentException("Offset must be a multiple of the chunk size within the file");
+        }
+        int index = (int) (offset / session.getChunkSize());
+        long expectedLength = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+        // The bytes at this offset are about to change; until they verify, the chunk counts as missing
+        if (sessionRepository.beginChunkWrite(uploadId, userId, index) == 0) {
+            throw new NoSuchElementException("Upload not found or already completed");
+        }
+        boolean verified = false;
+        try {
+            writeVerified(session, offset, expectedLength, checksum, body);
+            verified = true;
+        } finally {
+            sessionRepository.endChunkWrite(uploadId, index, verified);
+        }
+        meterRegistry.counter("chat.uploads.chunked.chunks", "result", "stored").increment();
+        byte[] received = sessionRepository.findReceivedChunks(uploadId);
+        return received != null ? BitSet.valueOf(received).cardinality() : 0;
+    }
+
+    private void writeVerified(UploadSession session, long offset, long expectedLength, String checksum,
+                               InputStream body) throws IOException {
+        MessageDigest digest = sha256();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(session.getTempPath()), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                if (written + read > expectedLength) {
+                    throw new IllegalArgumentException("Chunk is longer than " + expectedLength + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer slice = ByteBuffer.wrap(buffer, 0, read);
+                while (slice.hasRemaining()) {
+                    written += channel.write(slice, offset + written);
+                }
+            }
+        }
+        if (written != expectedLength) {
+            throw new IllegalArgumentException("Chunk has " + written + " bytes, expected " + expectedLength);
+        }
+        if (checksum == null || !HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(checksum)) {
+            meterRegistry.counter("chat.uploads.chunked.chunks", "result", "checksum_mismatch").increment();
+            throw new IllegalArgumentException("Chunk checksum does not match");
+        }
+    }
+
+    /**
+     * Indexes of chunks still missing, so a client can resume where it left off
+     */
+    public List<Integer> missingChunks(UploadSession session) {
+        BitSet received = session.getReceivedChunks() != null ? BitSet.valueOf(session.getReceivedChunks()) : new BitSet();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = received.nextClearBit(0); i < session.getChunkCount(); i = received.nextClearBit(i + 1)) {
+            missing.add(i);
+        }
+        return missing;
+    }
+
+    /**
+     * Verify the assembled file, move it into the blob store and send it as a message
+     */
+    public MessageDTO complete(String uploadId, Long userId, String content) throws IOException {
+        UploadSession session = getSession(uploadId, userId);
+        if (!missingChunks(session).isEmpty()) {
+            throw new IllegalStateException("Upload is missing chunks");
+        }
+        // Only one completion may take the file, and only while no chunk is being (re)written
+        byte[] allReceived = allReceived(session.getChunkCount());
+        if (sessionRepository.claim(uploadId, userId, allReceived) == 0) {
+            throw new IllegalStateException("Upload is already being completed or still receiving chunks");
+        }
+
+        BlobStore.StoredContent blob;
+        try {
+            Path file = Paths.get(session.getTempPath());
+            String hash = hashOf(file);
+            if (session.getExpectedSha256() != null && !session.getExpectedSha256().equals(hash)) {
+                throw new IllegalArgumentException("Assembled file does not match the declared sha256");
+            }
+            blob = blobStore.adopt(file, hash, session.getTotalSize());
+        } catch (IOException | RuntimeException e) {
+            // The file is still in place, so hand the session back for the client to fix and retry
+            session.setReceivedChunks(allReceived);
+            session.setActiveWriters(0);
+            sessionRepository.save(session);
+            throw e;
+        }
+
+        MessageDTO message = messageService.sendMessageWithStoredAttachment(session.getUserId(),
+                session.getConversationId(), content, session.getFileName(), session.getMimeType(), blob);
+        meterRegistry.counter("chat.uploads.chunked.sessions", "event", "completed").increment();
+        return message;
+    }
+
+    /**
+     * Drop sessions past their expiry together with their partial files
+     */
+    @Scheduled(fixedDelayString = "${app.uploads.chunked.sweep-interval-ms:600000}")
+    public void sweepExpired() {
+        List<UploadSession> expired;
+        do {
+            expired = sessionRepository.findTop500ByExpiresAtBefore(LocalDateTime.now());
+            for (UploadSession session : expired) {
+                try {
+                    Files.deleteIfExists(Paths.get(session.getTempPath()));
+                } catch (IOException e) {
+                    log.warn("Could not delete partial upload {}: {}", session.getId(), e.getMessage());
+                }
+                sessionRepository.delete(session);
+            }
+            meterRegistry.counter("chat.uploads.chunked.sessions", "event", "expired").increment(expired.size());
+        } while (expired.size() == 500);
+    }
+
+    /**
+     * The received-chunks column of a session with every chunk in, as sized on creation
+     */
+    static byte[] allReceived(int chunkCount) {
+        BitSet all = new BitSet(chunkCount);
+        all.set(0, chunkCount);
+        return Arrays.copyOf(all.toByteArray(), (chunkCount + 7) / 8);
+    }
+
+    private static String hashOf(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.chatapp.whatsapp.service;
 
+import com.chatapp.whatsapp.cache.MembershipIndex;
 import com.chatapp.whatsapp.dto.CreateGroupRequest;
 import com.chatapp.whatsapp.entity.Conversation;
 import com.chatapp.whatsapp.entity.ConversationParticipant;
@@ -13,6 +14,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -22,6 +24,8 @@ public class GroupService {
     private final ConversationRepository conversationRepository;
     private final ConversationParticipantRepository participantRepository;
     private final UserRepository userRepository;
+    private final MembershipIndex membershipIndex;
+    private final InboxService inboxService;
 
     public Conversation createGroup(CreateGroupRequest request) {
         // Validate that all users exist
@@ -51,6 +55,8 @@ public class GroupService {
                 .joinedAt(LocalDateTime.now())
                 .build();
         participantRepository.save(creatorParticipant);
+        membershipIndex.addMemberAfterCommit(savedConversation.getId(), request.getCreatorId());
+        inboxService.recordJoin(savedConversation.getId(), request.getCreatorId());
 
         // Add other members
         for (Long memberId : request.getMemberIds()) {
@@ -62,6 +68,8 @@ public class GroupService {
                     .joinedAt(LocalDateTime.now())
                     .build();
             participantRepository.save(memberParticipant);
+            membershipIndex.addMemberAfterCommit(savedConversation.getId(), memberId);
+            inboxService.recordJoin(savedConversation.getId(), memberId);
         }
 
         return savedConversation;
@@ -83,19 +91,28 @@ public class GroupService {
                 .orElseThrow(() -> new RuntimeException("User to add not found"));
 
         // Check if user is already a participant
-        if (participantRepository.existsByConversationIdAndUserId(conversationId, userIdToAdd)) {
+        if (membershipIndex.isMember(conversationId, userIdToAdd)) {
             throw new RuntimeException("User is already a member of this group");
         }
 
-        // Add the new participant
-        ConversationParticipant newParticipant = ConversationParticipant.builder()
-                .conversation(conversation)
-                .userId(userIdToAdd)
-                .role("MEMBER")
-                .isActive(true)
-                .joinedAt(LocalDateTime.now())
-                .build();
-        participantRepository.save(newParticipant);
+        // Rejoin a former member, otherwise add the new participant
+        Optional<ConversationParticipant> formerParticipant =
+                participantRepository.findByConversationIdAndUserId(conversationId, userIdToAdd);
+        if (formerParticipant.isPresent()) {
+            formerParticipant.get().rejoin();
+            participantRepository.save(formerParticipant.get());
+        } else {
+            ConversationParticipant newParticipant = ConversationParticipant.builder()
+                    .conversation(conversation)
+                    .userId(userIdToAdd)
+                    .role("MEMBER")
+                    .isActive(true)
+                    .joinedAt(LocalDateTime.now())
+                    .build();
+            participantRepository.save(newParticipant);
+        }
+        membershipIndex.addMemberAfterCommit(conversationId, userIdToAdd);
+        inboxService.recordJoin(conversationId, userIdToAdd);
 
         conversation.setUpdatedAt(LocalDateTime.now());
         conversationRepository.save(conversation);
@@ -113,6 +130,9 @@ public class GroupService {
                 .orElseThrow(() -> new SecurityException("User does not have permission to remove participants"));
 
         // Find the participant to remove
+        if (!membershipIndex.isMember(conversationId, userIdToRemove)) {
+            throw new RuntimeException("Participant not found in this group");
+        }
         ConversationParticipant participantToRemove = participantRepository.findByConversationIdAndUserId(conversationId, userIdToRemove)
                 .filter(ConversationParticipant::getIsActive)
                 .orElseThrow(() -> new RuntimeException("Participant not found in this group"));
@@ -120,6 +140,8 @@ public class GroupService {
         // Deactivate the participant (soft delete)
         participantToRemove.leave();
         participantRepository.save(participantToRemove);
+        membershipIndex.removeMemberAfterCommit(conversationId, userIdToRemove);
+        inboxService.recordLeave(conversationId, userIdToRemove);
 
         conversation.setUpdatedAt(LocalDateTime.now());
         conversationRepository.save(conversation);
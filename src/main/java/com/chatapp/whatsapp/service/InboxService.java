@@ -0,0 +1,294 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.ReadWatermarkIndex;
+import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.entity.InboxEntry;
+import com.chatapp.whatsapp.entity.Message;
+import com.chatapp.whatsapp.repository.MessageRepository;
+import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
+import com.chatapp.whatsapp.respository.InboxEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the user_inbox read model incrementally, in the same transaction as the write that changes it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InboxService {
+
+    static final int PREVIEW_LENGTH = 200;
+
+    private static final String IS_NEWER = "EXCLUDED.last_message_id > COALESCE(user_inbox.last_message_id, 0)";
+
+    /**
+     * Fan a new message out to every active member's inbox row in one statement.
+     * Last-message columns only move forward; the unread counter increments for every member but the sender.
+     */
+    private static final String RECORD_MESSAGE =
+            "INSERT INTO user_inbox (user_id, conversation_id, last_message_id, last_message_preview, " +
+            "last_message_type, last_sender_id, last_message_at, activity_at, unread_count) " +
+            "SELECT cp.user_id, cp.conversation_id, ?, ?, ?, ?, ?, ?, CASE WHEN cp.user_id <> ? THEN 1 ELSE 0 END " +
+            "FROM conversation_participants cp " +
+            "WHERE cp.conversation_id = ? AND cp.is_active = true " +
+            "ON CONFLICT (user_id, conversation_id) DO UPDATE SET " +
+            "last_message_preview = CASE WHEN " + IS_NEWER + " THEN EXCLUDED.last_message_preview ELSE user_inbox.last_message_preview END, " +
+            "last_message_type = CASE WHEN " + IS_NEWER + " THEN EXCLUDED.last_message_type ELSE user_inbox.last_message_type END, " +
+            "last_sender_id = CASE WHEN " + IS_NEWER + " THEN EXCLUDED.last_sender_id ELSE user_inbox.last_sender_id END, " +
+            "last_message_at = CASE WHEN " + IS_NEWER + " THEN EXCLUDED.last_message_at ELSE user_inbox.last_message_at END, " +
+            "activity_at = GREATEST(user_inbox.activity_at, EXCLUDED.activity_at), " +
+            "last_message_id = GREATEST(COALESCE(user_inbox.last_message_id, 0), EXCLUDED.last_message_id), " +
+            "unread_count = user_inbox.unread_count + EXCLUDED.unread_count";
+
+    /**
+     * Rewrite the preview of the inbox rows whose last message was just edited
+     */
+    private static final String RECORD_EDIT =
+            "UPDATE user_inbox SET last_message_preview = ? WHERE conversation_id = ? AND last_message_id = ?";
+
+    /**
+     * Point the inbox rows whose last message was just deleted at the newest live message (or none)
+     */
+    private static final String RECORD_DELETE =
+            "UPDATE user_inbox SET (last_message_id, last_message_preview, last_message_type, last_sender_id, last_message_at) = (" +
+            "SELECT m.id, LEFT(m.content, " + PREVIEW_LENGTH + "), m.message_type, m.sender_id, m.sent_at FROM messages m " +
+            "WHERE m.conversation_id = user_inbox.conversation_id AND m.is_deleted = false " +
+            "ORDER BY m.id DESC LIMIT 1) " +
+            "WHERE conversation_id = ? AND last_message_id = ?";
+
+    private static final String RECORD_JOIN =
+            "INSERT INTO user_inbox (user_id, conversation_id, activity_at, unread_count) " +
+            "VALUES (?, ?, now(), 0) " +
+            "ON CONFLICT (user_id, conversation_id) DO NOTHING";
+
+    /**
+     * Create rows for active participants that have none yet (e.g. data that predates the read model)
+     */
+    private static final String BACKFILL =
+            "INSERT INTO user_inbox (user_id, conversation_id, last_message_id, last_message_preview, " +
+            "last_message_type, last_sender_id, last_message_at, activity_at, unread_count) " +
+            "SELECT cp.user_id, cp.conversation_id, lm.id, LEFT(lm.content, " + PREVIEW_LENGTH + "), lm.message_type, " +
+            "lm.sender_id, lm.sent_at, COALESCE(lm.sent_at, c.updated_at, c.created_at, now()), " +
+            "(SELECT COUNT(*) FROM messages um WHERE um.conversation_id = cp.conversation_id " +
+            " AND um.id > COALESCE(cp.last_read_message_id, 0) AND um.sender_id <> cp.user_id AND um.is_deleted = false) " +
+            "FROM conversation_participants cp " +
+            "JOIN conversations c ON c.id = cp.conversation_id " +
+            "LEFT JOIN LATERAL (SELECT m.id, m.content, m.message_type, m.sender_id, m.sent_at FROM messages m " +
+            "  WHERE m.conversation_id = cp.conversation_id AND m.is_deleted = false " +
+            "  ORDER BY m.id DESC LIMIT 1) lm ON true " +
+            "WHERE cp.is_active = true " +
+            "AND NOT EXISTS (SELECT 1 FROM user_inbox i WHERE i.user_id = cp.user_id AND i.conversation_id = cp.conversation_id) " +
+            "ON CONFLICT (user_id, conversation_id) DO NOTHING";
+
+    /**
+     * Messages from others after the participant's read watermark
+     */
+    private static final String UNREAD_AFTER_WATERMARK =
+            "SELECT COUNT(*) FROM messages m WHERE m.conversation_id = %1$s.conversation_id " +
+            "AND m.id > COALESCE(%2$s, 0) AND m.sender_id <> %1$s.user_id AND m.is_deleted = false";
+
+    private static final String RESET_UNREAD =
+            "UPDATE user_inbox SET unread_count = (" + UNREAD_AFTER_WATERMARK.formatted("user_inbox", "?") + ") " +
+            "WHERE user_id = ? AND conversation_id = ?";
+
+    private static final String RECOUNT_UNREAD =
+            "UPDATE user_inbox SET unread_count = (" + UNREAD_AFTER_WATERMARK.formatted("user_inbox",
+                    "(SELECT cp.last_read_message_id FROM conversation_participants cp " +
+                    "WHERE cp.conversation_id = user_inbox.conversation_id AND cp.user_id = user_inbox.user_id)") + ") " +
+            "WHERE user_id = ? AND conversation_id = ?";
+
+    private static final String RECOUNT_CONVERSATION_UNREAD =
+            "UPDATE user_inbox SET unread_count = (" + UNREAD_AFTER_WATERMARK.formatted("user_inbox",
+                    "(SELECT cp.last_read_message_id FROM conversation_participants cp " +
+                    "WHERE cp.conversation_id = user_inbox.conversation_id AND cp.user_id = user_inbox.user_id)") + ") " +
+            "WHERE conversation_id = ?";
+
+    private static final String NEXT_RECONCILE_CHUNK =
+            "SELECT id FROM user_inbox WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String RECONCILE_CHUNK =
+            "UPDATE user_inbox i SET unread_count = c.unread FROM (" +
+            "SELECT ui.id, (" + UNREAD_AFTER_WATERMARK.formatted("ui", "cp.last_read_message_id") + ") AS unread " +
+            "FROM user_inbox ui JOIN conversation_participants cp " +
+            "ON cp.conversation_id = ui.conversation_id AND cp.user_id = ui.user_id " +
+            "WHERE ui.id BETWEEN ? AND ?) c " +
+            "WHERE i.id = c.id AND i.unread_count <> c.unread";
+
+    private final InboxEntryRepository inboxEntryRepository;
+    private final ConversationParticipantRepository participantRepository;
+    private final MessageRepository messageRepository;
+    private final ReadWatermarkIndex readWatermarkIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.inbox.unread-reconciliation.enabled:true}")
+    private boolean reconciliationEnabled;
+
+    @Value("${app.inbox.unread-reconciliation.chunk-size:500}")
+    private int reconciliationChunkSize;
+
+    public void recordMessage(Message message) {
+        recordMessage(message.getId(), message.getConversationId(), message.getSenderId(),
+                message.getContent(), message.getMessageType(), message.getSentAt());
+    }
+
+    /**
+     * Update every member's inbox row for a newly persisted message
+     */
+    public void recordMessage(Long messageId, Long conversationId, Long senderId,
+                              String content, String messageType, LocalDateTime sentAt) {
+        Timestamp sentAtTs = Timestamp.valueOf(sentAt != null ? sentAt : LocalDateTime.now());
+        jdbcTemplate.update(RECORD_MESSAGE,
+                messageId, preview(content), messageType, senderId, sentAtTs, sentAtTs,
+                senderId, conversationId);
+    }
+
+    /**
+     * Inbox updates for a batch of new messages in one JDBC batch. Each row is
+     * {messageId, conversationId, senderId, content, messageType, sentAt}, in id order.
+     */
+    public void recordMessages(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            LocalDateTime sentAt = (LocalDateTime) row[5];
+            Timestamp sentAtTs = Timestamp.valueOf(sentAt != null ? sentAt : LocalDateTime.now());
+            args.add(new Object[]{row[0], preview((String) row[3]), row[4], row[2], sentAtTs, sentAtTs,
+                    row[2], row[1]});
+        }
+        jdbcTemplate.batchUpdate(RECORD_MESSAGE, args);
+    }
+
+    /**
+     * Refresh the preview for members whose inbox shows the edited message
+     */
+    public void recordEdit(Message message) {
+        jdbcTemplate.update(RECORD_EDIT, preview(message.getContent()), message.getConversationId(), message.getId());
+    }
+
+    /**
+     * After a soft delete, fall back to the previous live message in the previews that showed it,
+     * and recount the unread counters of the conversation's members now that it no longer counts
+     */
+    public void recordDelete(Long conversationId, Long messageId) {
+        jdbcTemplate.update(RECORD_DELETE, conversationId, messageId);
+        jdbcTemplate.update(RECOUNT_CONVERSATION_UNREAD, conversationId);
+    }
+
+    /**
+     * Make sure a member who just joined sees the conversation in their inbox
+     */
+    public void recordJoin(Long conversationId, Long userId) {
+        jdbcTemplate.update(RECORD_JOIN, userId, conversationId);
+    }
+
+    @Transactional
+    public void recordLeave(Long conversationId, Long userId) {
+        inboxEntryRepository.deleteEntry(userId, conversationId);
+    }
+
+    /**
+     * Advance the user's read watermark (to the latest message when none is given) and
+     * recount their unread counter from it. A watermark that would move backwards is ignored.
+     */
+    @Transactional
+    public void markRead(Long conversationId, Long userId, Long upToMessageId) {
+        ConversationParticipant participant = participantRepository.findByConversationIdAndUserId(conversationId, userId)
+                .orElse(null);
+        if (participant == null) {
+            return;
+        }
+        Long watermark = upToMessageId;
+        if (watermark == null) {
+            watermark = messageRepository.findLatestMessageInConversation(conversationId)
+                    .map(Message::getId)
+                    .orElse(null);
+        }
+        if (!participant.updateLastRead(watermark)) {
+            return;
+        }
+        participantRepository.save(participant);
+        jdbcTemplate.update(RESET_UNREAD, participant.getLastReadMessageId(), userId, conversationId);
+        readWatermarkIndex.advanceAfterCommit(conversationId, userId, participant.getLastReadMessageId());
+    }
+
+    /**
+     * Recount unread counters from the watermarks now stored on the participant rows,
+     * for a batch of {@code {userId, conversationId}} pairs whose read watermark moved
+     */
+    public void recountUnread(List<Object[]> userConversationPairs) {
+        if (!userConversationPairs.isEmpty()) {
+            jdbcTemplate.batchUpdate(RECOUNT_UNREAD, userConversationPairs);
+        }
+    }
+
+    /**
+     * O(1) unread count for one conversation, read from the user's inbox row
+     */
+    public int getUnreadCount(Long conversationId, Long userId) {
+        return inboxEntryRepository.findByUserIdAndConversationId(userId, conversationId)
+                .map(InboxEntry::getUnreadCount)
+                .orElse(0);
+    }
+
+    /**
+     * Recompute every unread counter from the read watermarks, one bounded id range at a time,
+     * so counters drifted by deletes or failed writes converge without a long-running statement.
+     */
+    @Scheduled(initialDelayString = "${app.inbox.unread-reconciliation.interval-ms:600000}",
+            fixedDelayString = "${app.inbox.unread-reconciliation.interval-ms:600000}")
+    public void reconcileUnreadCounts() {
+        if (!reconciliationEnabled) {
+            return;
+        }
+        long lastId = 0;
+        int corrected = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(NEXT_RECONCILE_CHUNK, Long.class, lastId, reconciliationChunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            corrected += jdbcTemplate.update(RECONCILE_CHUNK, ids.get(0), ids.get(ids.size() - 1));
+            lastId = ids.get(ids.size() - 1);
+        }
+        meterRegistry.counter("chat.inbox.unread.reconciled").increment(corrected);
+        if (corrected > 0) {
+            log.info("Reconciled {} drifted unread counters", corrected);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            int created = jdbcTemplate.update(BACKFILL);
+            if (created > 0) {
+                log.info("Backfilled {} inbox entries", created);
+            }
+        } catch (Exception e) {
+            log.warn("Could not backfill inbox entries: {}", e.getMessage());
+        }
+    }
+
+    private static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH);
+    }
+}
@@ -0,0 +1,189 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.entity.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text search over message content, backed by the message_search table: one tsvector
+ * per live message under a GIN index (see DatabaseIndexInitializer).
+ *
+ * Rows are written in the same transaction as the message itself, rewritten on edit and
+ * removed on delete. Messages that predate the index are picked up by a background backfill
+ * that walks the messages table in bounded id ranges after startup, resuming from the id it
+ * recorded in message_search_backfill.
+ */
+@Service
+@Slf4j
+public class MessageSearchService {
+
+    private static final String INDEX_MESSAGE =
+            "INSERT INTO message_search (message_id, conversation_id, document) " +
+            "VALUES (?, ?, to_tsvector(?::regconfig, COALESCE(?, ''))) " +
+            "ON CONFLICT (message_id) DO UPDATE SET document = EXCLUDED.document";
+
+    private static final String REMOVE_MESSAGE = "DELETE FROM message_search WHERE message_id = ?";
+
+    private static final String NEXT_BACKFILL_CHUNK =
+            "SELECT id FROM messages WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String BACKFILL_CHUNK =
+            "INSERT INTO message_search (message_id, conversation_id, document) " +
+            "SELECT m.id, m.conversation_id, to_tsvector(?::regconfig, COALESCE(m.content, '')) " +
+            "FROM messages m " +
+            "WHERE m.id BETWEEN ? AND ? AND m.is_deleted = false AND m.content IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM message_search s WHERE s.message_id = m.id) " +
+            "ON CONFLICT (message_id) DO NOTHING";
+
+    private static final String LOAD_BACKFILL_MARK =
+            "SELECT last_message_id FROM message_search_backfill WHERE id = 1";
+
+    private static final String SAVE_BACKFILL_MARK =
+            "INSERT INTO message_search_backfill (id, last_message_id) VALUES (1, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET last_message_id = GREATEST(message_search_backfill.last_message_id, EXCLUDED.last_message_id)";
+
+    /**
+     * Matches in the user's active conversations, best cover-density rank first, newest first on ties
+     */
+    static final String SEARCH =
+            "SELECT s.message_id FROM message_search s, websearch_to_tsquery(?::regconfig, ?) q " +
+            "WHERE s.document @@ q " +
+            "AND s.conversation_id IN (SELECT cp.conversation_id FROM conversation_participants cp " +
+            "  WHERE cp.user_id = ? AND cp.is_active = true) " +
+            "%s" +
+            "ORDER BY ts_rank_cd(s.document, q) DESC, s.message_id DESC " +
+            "LIMIT ? OFFSET ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Timer searchTimer;
+
+    @Value("${app.search.text-config:simple}")
+    private String textConfig;
+
+    @Value("${app.search.backfill.enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${app.search.backfill.chunk-size:1000}")
+    private int backfillChunkSize;
+
+    private volatile boolean running = true;
+    private Thread backfillThread;
+
+    public MessageSearchService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchTimer = Timer.builder("chat.search.messages.latency")
+                .description("Time to run one ranked full-text message search")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Index (or re-index after an edit) one message, inside the caller's transaction
+     */
+    public void index(Message message) {
+        index(message.getId(), message.getConversationId(), message.getContent());
+    }
+
+    public void index(Long messageId, Long conversationId, String content) {
+        if (content == null) {
+            return;
+        }
+        jdbcTemplate.update(INDEX_MESSAGE, messageId, conversationId, textConfig, content);
+    }
+
+    /**
+     * Index a batch of {@code {messageId, conversationId, content}} rows in one round trip
+     */
+    public void indexAll(List<Object[]> rows) {
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[2] != null) {
+                args.add(new Object[]{row[0], row[1], textConfig, row[2]});
+            }
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(INDEX_MESSAGE, args);
+        }
+    }
+
+    public void remove(Long messageId) {
+        jdbcTemplate.update(REMOVE_MESSAGE, messageId);
+    }
+
+    /**
+     * Ids of matching messages across the user's conversations (or one of them), in rank order.
+     * The query accepts web-search syntax: quoted phrases, {@code or}, and {@code -excluded} terms.
+     */
+    public List<Long> search(Long userId, String query, Long conversationId, int page, int size) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        List<Object> args = new ArrayList<>(6);
+        args.add(textConfig);
+        args.add(query);
+        args.add(userId);
+        if (conversationId != null) {
+            args.add(conversationId);
+        }
+        args.add(size);
+        args.add((long) Math.max(page, 0) * size);
+        String sql = SEARCH.formatted(conversationId != null ? "AND s.conversation_id = ? " : "");
+        return searchTimer.record(() -> jdbcTemplate.queryForList(sql, Long.class, args.toArray()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        if (!backfillEnabled) {
+            return;
+        }
+        backfillThread = new Thread(this::backfill, "message-search-backfill");
+        backfillThread.setDaemon(true);
+        backfillThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (backfillThread != null) {
+            backfillThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /**
+     * Index every message that has no search row yet, one short statement per id range, starting
+     * after the persisted high-water mark and advancing it with each chunk. Messages above the mark
+     * that were written since are already indexed on write, so the scan after a restart is short.
+     */
+    private void backfill() {
+        long lastId = 0;
+        int indexed = 0;
+        try {
+            lastId = jdbcTemplate.queryForList(LOAD_BACKFILL_MARK, Long.class).stream().findFirst().orElse(0L);
+            while (running) {
+                List<Long> ids = jdbcTemplate.queryForList(NEXT_BACKFILL_CHUNK, Long.class, lastId, backfillChunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                indexed += jdbcTemplate.update(BACKFILL_CHUNK, textConfig, ids.get(0), ids.get(ids.size() - 1));
+                lastId = ids.get(ids.size() - 1);
+                jdbcTemplate.update(SAVE_BACKFILL_MARK, lastId);
+            }
+            if (indexed > 0) {
+                log.info("Backfilled {} messages into the search index", indexed);
+            }
+        } catch (Exception e) {
+            log.warn("Message search backfill stopped after id {}: {}", lastId, e.getMessage());
+        }
+    }
+}
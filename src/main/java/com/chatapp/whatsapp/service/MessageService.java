@@ -1,27 +1,37 @@
 package com.chatapp.whatsapp.service;
 
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.cache.PresenceRegistry;
+import com.chatapp.whatsapp.cache.SenderProfile;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.cache.UserDirectoryIndex;
 import com.chatapp.whatsapp.dto.ChatMessageDTO;
+import com.chatapp.whatsapp.dto.MessageCursorPage;
 import com.chatapp.whatsapp.dto.MessageDTO;
 import com.chatapp.whatsapp.dto.UserDTO;
 import com.chatapp.whatsapp.entity.*;
 import com.chatapp.whatsapp.respository.*;
+import com.chatapp.whatsapp.storage.AttachmentImageProcessor;
+import com.chatapp.whatsapp.storage.BlobStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,14 +44,42 @@ public class MessageService {
     private final com.chatapp.whatsapp.repository.MessageRepository messageRepository;
     private final MessageAttachmentRepository attachmentRepository;
     private final ConversationParticipantRepository participantRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationBroadcaster conversationBroadcaster;
+    private final SenderProfileCache senderProfileCache;
+    private final MembershipIndex membershipIndex;
+    private final PrivateConversationService privateConversationService;
+    private final InboxService inboxService;
+    private final PresenceRegistry presenceRegistry;
+    private final ReceiptService receiptService;
+    private final MessageSearchService messageSearchService;
+    private final UserDirectoryIndex userDirectoryIndex;
+    private final BlobStore blobStore;
+    private final AttachmentImageProcessor attachmentImageProcessor;
+    private final AttachmentTokenService attachmentTokenService;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final int USER_SEARCH_LIMIT = 20;
+    private static final long MAX_ATTACHMENT_BYTES = 10 * 1024 * 1024;
 
-    private static final String UPLOAD_DIR = "root/";
+    /**
+     * Edits and deletes are published under the conversation topic, e.g. {@code /topic/conversation/42/updates}
+     */
+    public static final String MESSAGE_UPDATES_DESTINATION = "/updates";
 
     /**
      * Search users by username (excluding current user)
      */
     public List<UserDTO> searchUsers(String username, Long currentUserId) {
+        if (userDirectoryIndex.isLoaded()) {
+            List<Long> ids = userDirectoryIndex.search(username, currentUserId, USER_SEARCH_LIMIT);
+            Map<Long, User> byId = userRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(User::getId, user -> user));
+            return ids.stream()
+                    .map(byId::get)
+                    .filter(user -> user != null)
+                    .map(this::convertUserToDTO)
+                    .collect(Collectors.toList());
+        }
         List<User> users = userRepository.findByUsernameContainingIgnoreCaseAndIdNotAndIsActiveTrue(
                 username, currentUserId);
         return users.stream()
@@ -74,6 +112,7 @@ public class MessageService {
         // Create message
         Message message = Message.builder()
                 .conversation(conversation)
+                .conversationId(conversation.getId())
                 .senderId(senderId)
                 .content(content)
                 .messageType("TEXT")
@@ -83,21 +122,19 @@ public class MessageService {
                 .build();
 
         Message savedMessage = messageRepository.save(message);
+        afterMessageSaved(savedMessage);
 
-        // Broadcast via WebSocket
+        // Broadcast via WebSocket once the message is committed and readable
         MessageDTO messageDTO = convertMessageToDTO(savedMessage);
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + conversation.getId(),
-                messageDTO
-        );
+        conversationBroadcaster.broadcastAfterCommit(conversation.getId(), messageDTO);
 
         return messageDTO;
     }
 
     /**
-     * Send message with file attachment
+     * Send message with file attachment. The file is written before the transaction opens,
+     * so the connection is only held for the metadata inserts.
      */
-    @Transactional
     public MessageDTO sendMessageWithAttachment(Long senderId, String recipientUsername,
                                                 String content, MultipartFile file) throws IOException {
         User sender = userRepository.findById(senderId)
@@ -107,16 +144,69 @@ public class MessageService {
                 .orElseThrow(() -> new IllegalArgumentException("Recipient not found"));
 
         // Validate file size (10MB limit)
-        if (file.getSize() > 10 * 1024 * 1024) {
+        if (file.getSize() > MAX_ATTACHMENT_BYTES) {
             throw new IllegalArgumentException("File size exceeds 10MB limit");
         }
 
-        // Find or create conversation
-        Conversation conversation = findOrCreatePrivateConversation(sender, recipient);
+        // Store the content once per distinct hash; identical uploads only add a reference.
+        // If the transaction below fails the blob stays unreferenced and is garbage collected.
+        BlobStore.StoredContent blob;
+        try (InputStream upload = file.getInputStream()) {
+            blob = blobStore.write(upload, MAX_ATTACHMENT_BYTES);
+        }
 
-        // Create message
+        // Find or create conversation and save the message in one short transaction
+        MessageDTO messageDTO = transactionTemplate.execute(status -> {
+            Conversation conversation = findOrCreatePrivateConversation(sender, recipient);
+            return saveAttachmentMessage(conversation, senderId, content,
+                    file.getOriginalFilename(), file.getContentType(), blob);
+        });
+
+        // Broadcast via WebSocket; deferred to commit should a caller wrap this in a transaction
+        conversationBroadcaster.broadcastAfterCommit(messageDTO.getConversationId(), messageDTO);
+
+        return messageDTO;
+    }
+
+    /**
+     * Send a message with an attachment uploaded earlier through {@link AttachmentTokenService}.
+     * Membership is checked before the token is claimed, and subscribers are notified after commit.
+     */
+    @Transactional
+    public MessageDTO sendMessageWithUploadedAttachment(Long senderId, Long conversationId, String content,
+                                                        String token) {
+        Conversation conversation = resolveSenderConversation(conversationId, senderId);
+        PendingAttachment pending = attachmentTokenService.claim(token, senderId);
+        BlobStore.StoredContent blob = new BlobStore.StoredContent(pending.getBlobHash(),
+                pending.getSizeBytes(), blobStore.pathOf(pending.getBlobHash()), true);
+        MessageDTO messageDTO = saveAttachmentMessage(conversation, senderId, content,
+                pending.getFileName(), pending.getMimeType(), blob);
+        conversationBroadcaster.broadcastAfterCommit(conversationId, messageDTO);
+        return messageDTO;
+    }
+
+    /**
+     * Send a message whose attachment content is already in the blob store (e.g. an assembled chunked upload);
+     * subscribers are notified after commit
+     */
+    @Transactional
+    public MessageDTO sendMessageWithStoredAttachment(Long senderId, Long conversationId, String content,
+                                                      String fileName, String mimeType,
+                                                      BlobStore.StoredContent blob) {
+        Conversation conversation = resolveSenderConversation(conversationId, senderId);
+        MessageDTO messageDTO = saveAttachmentMessage(conversation, senderId, content, fileName, mimeType, blob);
+        conversationBroadcaster.broadcastAfterCommit(conversationId, messageDTO);
+        return messageDTO;
+    }
+
+    /**
+     * Save an ATTACHMENT message and its attachment row, taking a reference on the stored content
+     */
+    private MessageDTO saveAttachmentMessage(Conversation conversation, Long senderId, String content,
+                                             String fileName, String mimeType, BlobStore.StoredContent blob) {
         Message message = Message.builder()
                 .conversation(conversation)
+                .conversationId(conversation.getId())
                 .senderId(senderId)
                 .content(content)
                 .messageType("ATTACHMENT")
@@ -126,34 +216,25 @@ public class MessageService {
                 .build();
 
         Message savedMessage = messageRepository.save(message);
+        afterMessageSaved(savedMessage);
 
-        // Save file attachment
-        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        String fileType = determineFileType(file.getContentType());
-        Path uploadPath = Paths.get(UPLOAD_DIR + fileType);
-        Files.createDirectories(uploadPath);
-
-        Path filePath = uploadPath.resolve(fileName);
-        Files.copy(file.getInputStream(), filePath);
-
+        blobStore.acquire(blob.hash());
         MessageAttachment attachment = MessageAttachment.builder()
                 .message(savedMessage)
-                .fileName(file.getOriginalFilename())
-                .filePath(filePath.toString())
-                .fileSize(file.getSize())
-                .mimeType(file.getContentType())
+                .fileName(fileName)
+                .filePath(blob.path().toString())
+                .blobHash(blob.hash())
+                .fileSize(blob.size())
+                .mimeType(mimeType != null ? mimeType : "application/octet-stream")
                 .uploadedAt(LocalDateTime.now())
                 .build();
 
-        attachmentRepository.save(attachment);
+        MessageAttachment savedAttachment = attachmentRepository.save(attachment);
+        attachmentImageProcessor.processAfterCommit(savedAttachment);
 
-        // Broadcast via WebSocket
+        // The attachment id is what clients download through /api/attachments/{id}
         MessageDTO messageDTO = convertMessageToDTO(savedMessage);
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + conversation.getId(),
-                messageDTO
-        );
-
+        messageDTO.setAttachments(List.of(convertAttachmentToDTO(savedAttachment)));
         return messageDTO;
     }
 
@@ -162,51 +243,117 @@ public class MessageService {
      */
     @Transactional
     public MessageDTO saveWebSocketMessage(ChatMessageDTO chatMessage) {
-        // Validate conversation exists
-        Conversation conversation = conversationRepository.findById(chatMessage.getConversationId())
-                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
-
-        // Check if sender is participant (with auto-add fallback)
-        ConversationParticipant senderParticipant =
-                participantRepository
-                        .findByConversationIdAndUserId(conversation.getId(), chatMessage.getSenderId())
-                        .orElseGet(() -> {
-                            ConversationParticipant cp = ConversationParticipant.builder()
-                                    .conversation(conversation)
-                                    .userId(chatMessage.getSenderId())
-                                    .role("MEMBER")
-                                    .isActive(true)
-                                    .joinedAt(LocalDateTime.now())
-                                    .build();
-                            return participantRepository.save(cp);
-                        });
-
-        if (!senderParticipant.getIsActive()) {
-            throw new SecurityException("Sender is not an active participant");
+        // Validate conversation and sender membership
+        Conversation conversation = resolveSenderConversation(
+                chatMessage.getConversationId(), chatMessage.getSenderId());
+
+        // Build and save message entity; the caller broadcasts once the transaction has committed
+        Message saved = messageRepository.save(buildEntity(chatMessage, conversation));
+        afterMessageSaved(saved);
+
+        return convertMessageToDTO(saved);
+    }
+
+    /**
+     * Resolve the conversation a sender is posting to. Membership is answered from the index,
+     * which loads the conversation's active participants on a miss; non-members are rejected.
+     */
+    public Conversation resolveSenderConversation(Long conversationId, Long senderId) {
+        if (conversationId == null || senderId == null || !membershipIndex.isMember(conversationId, senderId)) {
+            throw new SecurityException("Not a member of conversation " + conversationId);
         }
+        return conversationRepository.getReferenceById(conversationId);
+    }
 
-        // Build and save message entity
-        Message saved = messageRepository.save(buildEntity(chatMessage));
+    /**
+     * Keep read models in step with a newly persisted message, inside the same transaction
+     */
+    private void afterMessageSaved(Message message) {
+        inboxService.recordMessage(message);
+        messageSearchService.index(message);
+    }
 
-        // Broadcast to conversation subscribers
+    /**
+     * Replace the content of the sender's own message, re-index it for search, refresh inbox
+     * previews that show it and publish the edited message to the conversation's updates topic
+     */
+    @Transactional
+    public MessageDTO editMessage(Long messageId, Long userId, String content) {
+        Message message = messageRepository.findById(messageId)
+                .filter(m -> !Boolean.TRUE.equals(m.getIsDeleted()))
+                .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+        if (!message.getSenderId().equals(userId)) {
+            throw new SecurityException("Only the sender can edit a message");
+        }
+        message.setContent(content);
+        message.setIsEdited(true);
+        Message saved = messageRepository.save(message);
+        messageSearchService.index(saved);
+        inboxService.recordEdit(saved);
         MessageDTO messageDTO = convertMessageToDTO(saved);
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + saved.getConversationId(),
-                messageDTO
-        );
-
+        conversationBroadcaster.broadcastAfterCommit(saved.getConversationId(),
+                conversationBroadcaster.topicOf(saved.getConversationId()) + MESSAGE_UPDATES_DESTINATION, messageDTO);
         return messageDTO;
     }
 
     /**
-     * THE MISSING buildEntity METHOD - Converts ChatMessageDTO to Message entity
+     * Soft-delete the sender's own message, drop it from the search index and from inbox previews,
+     * and publish the deletion to the conversation's updates topic. Deleting a message that is
+     * already deleted is a no-op, so blob references are released exactly once.
+     */
+    @Transactional
+    public void deleteMessage(Long messageId, Long userId) {
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+        if (!message.getSenderId().equals(userId)) {
+            throw new SecurityException("Only the sender can delete a message");
+        }
+        // Only the request that flips the flag owns the release; repeats and races change no row
+        if (messageRepository.markMessageAsDeleted(messageId) != 1) {
+            return;
+        }
+        messageSearchService.remove(messageId);
+        inboxService.recordDelete(message.getConversationId(), messageId);
+        for (MessageAttachment attachment : attachmentRepository.findByMessageId(messageId)) {
+            blobStore.release(attachment.getBlobHash());
+        }
+        conversationBroadcaster.broadcastAfterCommit(message.getConversationId(),
+                conversationBroadcaster.topicOf(message.getConversationId()) + MESSAGE_UPDATES_DESTINATION,
+                MessageDTO.builder()
+                        .id(messageId)
+                        .conversationId(message.getConversationId())
+                        .senderId(message.getSenderId())
+                        .messageType(message.getMessageType())
+                        .isDeleted(true)
+                        .build());
+    }
+
+    /**
+     * Ranked full-text search across the user's conversations, or within one when conversationId is given
      */
-    private Message buildEntity(ChatMessageDTO chatMessage) {
-        Conversation conversation = conversationRepository.findById(chatMessage.getConversationId())
-                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+    public List<MessageDTO> searchMessages(Long userId, String query, Long conversationId, int page, int size) {
+        List<Long> ids = messageSearchService.search(userId, query, conversationId, page, size);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Message> byId = messageRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Message::getId, m -> m));
+        Map<Long, SenderProfile> senders = senderProfileCache.getAll(
+                byId.values().stream().map(Message::getSenderId).collect(Collectors.toSet()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(m -> m != null && !Boolean.TRUE.equals(m.getIsDeleted()))
+                .map(m -> convertMessageToDTO(m, senders.get(m.getSenderId())))
+                .collect(Collectors.toList());
+    }
 
+    /**
+     * THE MISSING buildEntity METHOD - Converts ChatMessageDTO to Message entity
+     */
+    private Message buildEntity(ChatMessageDTO chatMessage, Conversation conversation) {
         return Message.builder()
                 .conversation(conversation)
+                .conversationId(conversation.getId())
                 .senderId(chatMessage.getSenderId())
                 .content(chatMessage.getContent())
                 .messageType(chatMessage.getMessageType() != null ? chatMessage.getMessageType() : "TEXT")
@@ -223,91 +370,118 @@ public class MessageService {
         // Use the correct method name with relationship navigation
         Page<Message> messages = messageRepository.findByConversation_IdAndIsDeletedFalse(
                 conversationId, pageable);
-        return messages.map(this::convertMessageToDTO);
-    }
 
-    /**
-     * Send typing indicator
-     */
-    public void sendTypingIndicator(Long senderId, String recipientUsername, boolean isTyping) {
-        User sender = userRepository.findById(senderId)
-                .orElseThrow(() -> new IllegalArgumentException("Sender not found"));
-
-        User recipient = userRepository.findByUsernameAndIsActiveTrue(recipientUsername)
-                .orElseThrow(() -> new IllegalArgumentException("Recipient not found"));
-
-        Conversation conversation = findOrCreatePrivateConversation(sender, recipient);
-
-        // Broadcast typing indicator
-        messagingTemplate.convertAndSend(
-                "/topic/conversation/" + conversation.getId() + "/typing",
-                new TypingIndicatorDTO(senderId, sender.getUsername(), isTyping)
-        );
+        // Resolve every sender on the page with at most one query
+        Map<Long, SenderProfile> senders = senderProfileCache.getAll(
+                messages.stream().map(Message::getSenderId).collect(Collectors.toSet()));
+        Page<MessageDTO> page = messages.map(message -> convertMessageToDTO(message, senders.get(message.getSenderId())));
+        receiptService.applyDerivedStatus(conversationId, page.getContent());
+        return page;
     }
 
     /**
-     * Find or create private conversation between two users
+     * Get conversation messages with keyset pagination. Pass at most one of {@code beforeCursor}
+     * (older history) or {@code afterCursor} (newer messages); with neither, the newest page is returned.
+     * Every page is a single range scan on (conversation_id, id), however deep it is.
      */
-    private Conversation findOrCreatePrivateConversation(User user1, User user2) {
-        Optional<Conversation> existingConversation = conversationRepository
-                .findPrivateConversationBetweenUsers(user1.getId(), user2.getId());
+    public MessageCursorPage getConversationMessagesByCursor(Long conversationId, String beforeCursor,
+                                                             String afterCursor, int size) {
+        if (beforeCursor != null && afterCursor != null) {
+            throw new IllegalArgumentException("Use either 'before' or 'after', not both");
+        }
 
-        if (existingConversation.isPresent()) {
-            return existingConversation.get();
+        // Fetch one extra row to learn whether another page exists without counting
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Message> rows;
+        if (afterCursor != null) {
+            rows = messageRepository.findPageAfter(conversationId, decodeCursor(afterCursor), limit);
+        } else if (beforeCursor != null) {
+            rows = messageRepository.findPageBefore(conversationId, decodeCursor(beforeCursor), limit);
+        } else {
+            rows = messageRepository.findLatestPage(conversationId, limit);
         }
 
-        // Create new private conversation
-        Conversation conversation = Conversation.builder()
-                .conversationType("PRIVATE")
-                .createdBy(user1.getId())
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+        boolean hasMore = rows.size() > size;
+        List<Message> page = hasMore ? rows.subList(0, size) : rows;
 
-        Conversation savedConversation = conversationRepository.save(conversation);
+        Map<Long, SenderProfile> senders = senderProfileCache.getAll(
+                page.stream().map(Message::getSenderId).collect(Collectors.toSet()));
+        List<MessageDTO> messages = page.stream()
+                .map(message -> convertMessageToDTO(message, senders.get(message.getSenderId())))
+                .collect(Collectors.toList());
+        receiptService.applyDerivedStatus(conversationId, messages);
 
-        // Add both users as participants
-        ConversationParticipant participant1 = ConversationParticipant.builder()
-                .conversation(savedConversation)
-                .userId(user1.getId())
-                .role("MEMBER")
-                .isActive(true)
-                .joinedAt(LocalDateTime.now())
+        return MessageCursorPage.builder()
+                .messages(messages)
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1).getId()) : null)
                 .build();
+    }
 
-        ConversationParticipant participant2 = ConversationParticipant.builder()
-                .conversation(savedConversation)
-                .userId(user2.getId())
-                .role("MEMBER")
-                .isActive(true)
-                .joinedAt(LocalDateTime.now())
-                .build();
+    private static String encodeCursor(Long messageId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("m:" + messageId).getBytes(StandardCharsets.UTF_8));
+    }
 
-        participantRepository.save(participant1);
-        participantRepository.save(participant2);
+    private static Long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!decoded.startsWith("m:")) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return Long.valueOf(decoded.substring(2));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
 
-        return savedConversation;
+    /**
+     * Find or create private conversation between two users
+     */
+    private Conversation findOrCreatePrivateConversation(User user1, User user2) {
+        // Resolved through the canonical pair key; no query at all on a cache hit
+        Long conversationId = privateConversationService.findOrCreateConversationId(user1.getId(), user2.getId());
+        return conversationRepository.getReferenceById(conversationId);
     }
 
     /**
      * Convert Message entity to DTO
      */
     private MessageDTO convertMessageToDTO(Message message) {
-        User sender = userRepository.findById(message.getSenderId()).orElse(null);
+        return convertMessageToDTO(message, senderProfileCache.get(message.getSenderId()));
+    }
 
+    private MessageDTO convertMessageToDTO(Message message, SenderProfile sender) {
         return MessageDTO.builder()
                 .id(message.getId())
                 .conversationId(message.getConversationId())
                 .senderId(message.getSenderId())
                 .senderUsername(sender != null ? sender.getUsername() : "Unknown")
+                .senderDisplayName(sender != null ? sender.getDisplayName() : null)
+                .senderProfileImage(sender != null ? sender.getProfileImage() : null)
                 .content(message.getContent())
                 .messageType(message.getMessageType())
                 .sentAt(message.getSentAt())
                 .isDeleted(message.getIsDeleted())
+                .isEdited(message.getIsEdited())
                 .status(message.getStatus())
                 .build();
     }
 
+    private MessageDTO.MessageAttachmentDTO convertAttachmentToDTO(MessageAttachment attachment) {
+        return MessageDTO.MessageAttachmentDTO.builder()
+                .id(attachment.getId())
+                .fileName(attachment.getFileName())
+                .filePath(attachment.getFilePath())
+                .fileSize(attachment.getFileSize())
+                .mimeType(attachment.getMimeType())
+                .uploadedAt(attachment.getUploadedAt())
+                .width(attachment.getWidth())
+                .height(attachment.getHeight())
+                .blurhash(attachment.getBlurhash())
+                .build();
+    }
+
     /**
      * Convert User entity to DTO
      */
@@ -317,42 +491,7 @@ public class MessageService {
                 .username(user.getUsername())
                 .email(user.getEmail())
                 .displayName(user.getDisplayName())
-                .isOnline(user.getIsOnline())
+                .isOnline(presenceRegistry.isOnline(user.getId()))
                 .build();
     }
-
-    /**
-     * Determine file type based on MIME type
-     */
-    private String determineFileType(String mimeType) {
-        if (mimeType == null) return "documents";
-
-        if (mimeType.startsWith("image/")) return "picture";
-        if (mimeType.startsWith("video/")) return "video";
-        if (mimeType.startsWith("audio/")) return "audio";
-        return "documents";
-    }
-
-    /**
-     * Simple DTO for typing indicators
-     */
-    public static class TypingIndicatorDTO {
-        private Long senderId;
-        private String senderUsername;
-        private boolean isTyping;
-
-        public TypingIndicatorDTO(Long senderId, String senderUsername, boolean isTyping) {
-            this.senderId = senderId;
-            this.senderUsername = senderUsername;
-            this.isTyping = isTyping;
-        }
-
-        // Getters and setters
-        public Long getSenderId() { return senderId; }
-        public void setSenderId(Long senderId) { this.senderId = senderId; }
-        public String getSenderUsername() { return senderUsername; }
-        public void setSenderUsername(String senderUsername) { this.senderUsername = senderUsername; }
-        public boolean isTyping() { return isTyping; }
-        public void setTyping(boolean typing) { isTyping = typing; }
-    }
 }
@@ -0,0 +1,336 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.SenderProfile;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.dto.ChatMessageDTO;
+import com.chatapp.whatsapp.dto.MessageDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Optional group-commit ingestion path for WebSocket chat messages.
+ *
+ * Inbound messages are queued and a single flusher thread drains them in micro-batches
+ * of at most {@code batch-size} messages, waiting no longer than {@code max-linger-ms}
+ * for a batch to fill. Each batch is written with one multi-row INSERT inside one
+ * transaction, and every sender's future completes only after that transaction commits.
+ * On shutdown the flusher itself drains and writes what is still queued, so batches are never
+ * written by two threads at once.
+ */
+@Service
+@Slf4j
+public class MessageWriteBehindService {
+
+    // Ids are taken from the table's own sequence up front, so each row's id is known before the INSERT
+    private static final String NEXT_IDS =
+            "SELECT nextval(pg_get_serial_sequence('messages', 'id')) FROM generate_series(1, ?)";
+    private static final String INSERT_PREFIX = "INSERT INTO messages " +
+            "(id, conversation_id, sender_id, content, message_type, sent_at, is_deleted, is_edited, status) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, false, false, 'SENT')";
+
+    // How often an idle flusher wakes up to notice shutdown
+    private static final long IDLE_POLL_MS = 100;
+
+    private final MessageService messageService;
+    private final SenderProfileCache senderProfileCache;
+    private final InboxService inboxService;
+    private final MessageSearchService messageSearchService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.messaging.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.messaging.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.messaging.write-behind.max-linger-ms:10}")
+    private long maxLingerMs;
+
+    @Value("${app.messaging.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+    private Timer flushTimer;
+    private DistributionSummary batchSizeSummary;
+
+    public MessageWriteBehindService(MessageService messageService,
+                                     SenderProfileCache senderProfileCache,
+                                     InboxService inboxService,
+                                     MessageSearchService messageSearchService,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.messageService = messageService;
+        this.senderProfileCache = senderProfileCache;
+        this.inboxService = inboxService;
+        this.messageSearchService = messageSearchService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flushTimer = Timer.builder("chat.messages.write_behind.flush")
+                .description("Time to persist and commit one micro-batch of WebSocket messages")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("chat.messages.write_behind.batch_size")
+                .description("Number of messages committed per micro-batch")
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.write_behind.queue_depth", queue, BlockingQueue::size)
+                .description("Messages waiting to be flushed")
+                .register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-behind message ingestion enabled (batchSize={}, maxLingerMs={})", batchSize, maxLingerMs);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        // The flusher finishes its current batch and then drains the queue itself
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        if (flusher.isAlive()) {
+            log.warn("Write-behind flusher still running after 30s with {} messages queued", queue.size());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a message for the next micro-batch. The returned future completes after the batch commits.
+     */
+    public CompletableFuture<MessageDTO> submit(ChatMessageDTO chatMessage) {
+        CompletableFuture<MessageDTO> future = new CompletableFuture<>();
+        if (chatMessage.getConversationId() == null || chatMessage.getSenderId() == null) {
+            future.completeExceptionally(new IllegalArgumentException("Conversation ID and sender ID are required"));
+            return future;
+        }
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Server is shutting down, please retry"));
+            return future;
+        }
+        if (!queue.offer(new PendingMessage(chatMessage, LocalDateTime.now(), future))) {
+            future.completeExceptionally(new IllegalStateException("Message queue is full, please retry"));
+        }
+        return future;
+    }
+
+    private void runFlushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingMessage first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, batchSize - batch.size());
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // The batch taken so far is flushed below rather than dropped
+                break;
+            } catch (Exception e) {
+                log.error("Write-behind flush loop failed", e);
+                batch.stream()
+                        .filter(p -> !p.future().isDone())
+                        .forEach(p -> p.future().completeExceptionally(e));
+                batch.clear();
+            }
+        }
+        // Shutting down: write the partial batch and anything still queued, on this thread only
+        queue.drainTo(batch);
+        for (int i = 0; i < batch.size(); i += batchSize) {
+            flush(batch.subList(i, Math.min(i + batchSize, batch.size())));
+        }
+    }
+
+    /**
+     * Validate, insert and commit one batch, then complete each sender's future
+     */
+    private void flush(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        List<PendingMessage> accepted = new ArrayList<>(batch.size());
+        List<MessageDTO> saved;
+        try {
+            saved = transactionTemplate.execute(status -> persistBatch(batch, accepted));
+        } catch (RuntimeException e) {
+            log.error("Write-behind batch of {} messages failed to commit", batch.size(), e);
+            batch.stream()
+                    .filter(p -> !p.future().isDone())
+                    .forEach(p -> p.future().completeExceptionally(e));
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        batchSizeSummary.record(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).future().complete(saved.get(i));
+        }
+    }
+
+    private List<MessageDTO> persistBatch(List<PendingMessage> batch, List<PendingMessage> accepted) {
+        // Participation is checked once per (conversation, sender) pair rather than once per message,
+        // and known members are answered from the membership index without a query
+        Map<String, RuntimeException> rejectedSenders = new HashMap<>();
+        Set<String> checkedSenders = new HashSet<>();
+        for (PendingMessage pending : batch) {
+            ChatMessageDTO message = pending.message();
+            String senderKey = message.getConversationId() + ":" + message.getSenderId();
+            if (checkedSenders.add(senderKey)) {
+                try {
+                    messageService.resolveSenderConversation(message.getConversationId(), message.getSenderId());
+                } catch (RuntimeException e) {
+                    rejectedSenders.put(senderKey, e);
+                }
+            }
+            RuntimeException rejection = rejectedSenders.get(senderKey);
+            if (rejection != null) {
+                pending.future().completeExceptionally(rejection);
+                continue;
+            }
+            accepted.add(pending);
+        }
+
+        if (accepted.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = insertRows(accepted);
+        List<Object[]> inboxRows = new ArrayList<>(accepted.size());
+        List<Object[]> searchRows = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            ChatMessageDTO message = accepted.get(i).message();
+            inboxRows.add(new Object[]{ids.get(i), message.getConversationId(), message.getSenderId(),
+                    message.getContent(), messageTypeOf(message), accepted.get(i).receivedAt()});
+            searchRows.add(new Object[]{ids.get(i), message.getConversationId(), message.getContent()});
+        }
+        inboxService.recordMessages(inboxRows);
+        messageSearchService.indexAll(searchRows);
+
+        Map<Long, SenderProfile> senders = senderProfileCache.getAll(accepted.stream()
+                .map(p -> p.message().getSenderId())
+                .collect(Collectors.toSet()));
+
+        List<MessageDTO> saved = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            PendingMessage pending = accepted.get(i);
+            SenderProfile sender = senders.get(pending.message().getSenderId());
+            saved.add(MessageDTO.builder()
+                    .id(ids.get(i))
+                    .conversationId(pending.message().getConversationId())
+                    .senderId(pending.message().getSenderId())
+                    .senderUsername(sender != null ? sender.getUsername() : "Unknown")
+                    .senderDisplayName(sender != null ? sender.getDisplayName() : null)
+                    .content(pending.message().getContent())
+                    .messageType(messageTypeOf(pending.message()))
+                    .sentAt(pending.receivedAt())
+                    .isDeleted(false)
+                    .isEdited(false)
+                    .status("SENT")
+                    .build());
+        }
+        return saved;
+    }
+
+    /**
+     * One multi-row INSERT for the whole batch. Ids are drawn from the sequence first and assigned
+     * in ascending order, so row i gets the i-th id without relying on the order RETURNING yields.
+     */
+    private List<Long> insertRows(List<PendingMessage> rows) {
+        List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(NEXT_IDS, Long.class, rows.size()));
+        if (ids.size() != rows.size()) {
+            throw new IllegalStateException("Expected " + rows.size() + " ids but got " + ids.size());
+        }
+        Collections.sort(ids);
+
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (INSERT_ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[rows.size() * 6];
+        int a = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            PendingMessage pending = rows.get(i);
+            args[a++] = ids.get(i);
+            args[a++] = pending.message().getConversationId();
+            args[a++] = pending.message().getSenderId();
+            args[a++] = pending.message().getContent();
+            args[a++] = messageTypeOf(pending.message());
+            args[a++] = Timestamp.valueOf(pending.receivedAt());
+        }
+
+        int inserted = jdbcTemplate.update(sql.toString(), args);
+        if (inserted != rows.size()) {
+            throw new IllegalStateException("Expected " + rows.size() + " inserted rows but got " + inserted);
+        }
+        return ids;
+    }
+
+    private static String messageTypeOf(ChatMessageDTO message) {
+        return message.getMessageType() != null ? message.getMessageType() : "TEXT";
+    }
+
+    private record PendingMessage(ChatMessageDTO message,
+                                  LocalDateTime receivedAt,
+                                  CompletableFuture<MessageDTO> future) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.config.DatabaseIndexInitializer;
+import com.chatapp.whatsapp.entity.Conversation;
+import com.chatapp.whatsapp.entity.MessageAttachment;
+import com.chatapp.whatsapp.respository.ConversationRepository;
+import com.chatapp.whatsapp.respository.MessageAttachmentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+/**
+ * Name search over the user's groups and attachments. Uses the similarity-ranked pg_trgm queries when the
+ * extension and its indexes are in place, and the original LIKE queries otherwise.
+ */
+@Service
+public class NameSearchService {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageAttachmentRepository attachmentRepository;
+    private final DatabaseIndexInitializer databaseIndexInitializer;
+
+    @Value("${app.search.trigram.enabled:true}")
+    private boolean trigramEnabled;
+
+    public NameSearchService(ConversationRepository conversationRepository,
+                             MessageAttachmentRepository attachmentRepository,
+                             DatabaseIndexInitializer databaseIndexInitializer) {
+        this.conversationRepository = conversationRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.databaseIndexInitializer = databaseIndexInitializer;
+    }
+
+    /**
+     * The user's groups matching the name: most similar first with pg_trgm, most recently active first without
+     */
+    public Page<Conversation> searchUserGroups(Long userId, String name, int page, int size) {
+        if (useTrigrams()) {
+            return conversationRepository.searchUserGroupsByNameSimilarity(userId, name, PageRequest.of(page, size));
+        }
+        return conversationRepository.findUserGroupsByNameContainingIgnoreCase(userId, name,
+                PageRequest.of(page, size, Sort.by("updatedAt").descending()));
+    }
+
+    /**
+     * Attachments in the user's conversations matching the file name: most similar first with pg_trgm,
+     * most recently uploaded first without
+     */
+    public Page<MessageAttachment> searchUserAttachments(Long userId, String fileName, int page, int size) {
+        if (useTrigrams()) {
+            return attachmentRepository.searchUserAttachmentsByFileNameSimilarity(userId, fileName, PageRequest.of(page, size));
+        }
+        return attachmentRepository.findUserAttachmentsByFileNameContainingIgnoreCase(userId, fileName,
+                PageRequest.of(page, size, Sort.by("uploadedAt").descending()));
+    }
+
+    private boolean useTrigrams() {
+        return trigramEnabled && databaseIndexInitializer.isTrigramAvailable();
+    }
+}
@@ -0,0 +1,140 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.cache.PresenceChangedEvent;
+import com.chatapp.whatsapp.cache.PresenceRegistry;
+import com.chatapp.whatsapp.dto.PresenceUpdateDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers presence changes to the users who share a conversation with the changed user.
+ *
+ * Transitions are debounced: a user's change is held for {@code app.presence.fanout.window-ms}
+ * and only delivered if their state at the end of the window differs from what was last delivered,
+ * so reconnect loops collapse into nothing. Each flush sends one batched frame per online recipient
+ * on {@code /topic/presence/{recipientId}} instead of one frame per change.
+ *
+ * {@link PresenceRegistry} publishes cluster-wide transitions on every node, so each node runs the
+ * same debounce and delivers only to the recipients whose sessions it holds.
+ */
+@Service
+@Slf4j
+public class PresenceFanoutService {
+
+    public static final String PRESENCE_TOPIC_PREFIX = "/topic/presence/";
+
+    private final PresenceRegistry presenceRegistry;
+    private final MembershipIndex membershipIndex;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // userId -> time of the first undelivered change in the current window
+    private final Map<Long, Long> pendingSince = new ConcurrentHashMap<>();
+    // Users last delivered as online; absent means offline
+    private final Map<Long, Boolean> lastDelivered = new ConcurrentHashMap<>();
+
+    private final Counter received;
+    private final Counter delivered;
+    private final Counter suppressed;
+    private final Counter frames;
+
+    @Value("${app.presence.fanout.window-ms:2000}")
+    private long windowMillis;
+
+    public PresenceFanoutService(PresenceRegistry presenceRegistry,
+                                 MembershipIndex membershipIndex,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.presenceRegistry = presenceRegistry;
+        this.membershipIndex = membershipIndex;
+        this.messagingTemplate = messagingTemplate;
+        this.received = Counter.builder("chat.presence.events")
+                .tag("outcome", "received")
+                .description("Presence transitions reported by the registry")
+                .register(meterRegistry);
+        this.delivered = Counter.builder("chat.presence.events")
+                .tag("outcome", "delivered")
+                .description("Presence changes that survived debouncing and were fanned out")
+                .register(meterRegistry);
+        this.suppressed = Counter.builder("chat.presence.events")
+                .tag("outcome", "suppressed")
+                .description("Presence transitions absorbed by the debounce window")
+                .register(meterRegistry);
+        this.frames = Counter.builder("chat.presence.frames")
+                .description("Batched presence frames sent to recipients")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        received.increment();
+        if (pendingSince.putIfAbsent(event.userId(), System.currentTimeMillis()) != null) {
+            // Already waiting out a window; only the state at the end of it matters
+            suppressed.increment();
+        }
+    }
+
+    /**
+     * Deliver every change whose debounce window has elapsed, batched per recipient
+     */
+    @Scheduled(fixedDelayString = "${app.presence.fanout.flush-interval-ms:500}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        Map<Long, List<PresenceUpdateDTO.PresenceDelta>> deltasByRecipient = new HashMap<>();
+
+        for (Map.Entry<Long, Long> pending : pendingSince.entrySet()) {
+            Long userId = pending.getKey();
+            if (now - pending.getValue() < windowMillis || !pendingSince.remove(userId, pending.getValue())) {
+                continue;
+            }
+            boolean online = presenceRegistry.isOnline(userId);
+            boolean wasOnline = (online ? lastDelivered.put(userId, Boolean.TRUE) : lastDelivered.remove(userId)) != null;
+            if (online == wasOnline) {
+                suppressed.increment();
+                continue;
+            }
+            delivered.increment();
+            PresenceUpdateDTO.PresenceDelta delta = PresenceUpdateDTO.PresenceDelta.builder()
+                    .userId(userId)
+                    .isOnline(online)
+                    .build();
+            for (Long recipient : interestedUsers(userId)) {
+                if (presenceRegistry.isConnectedLocally(recipient)) {
+                    deltasByRecipient.computeIfAbsent(recipient, id -> new ArrayList<>()).add(delta);
+                }
+            }
+        }
+
+        deltasByRecipient.forEach((recipient, deltas) -> {
+            messagingTemplate.convertAndSend(PRESENCE_TOPIC_PREFIX + recipient,
+                    PresenceUpdateDTO.builder().changes(deltas).build());
+            frames.increment();
+        });
+    }
+
+    /**
+     * Everyone sharing an active conversation with the user, from the cached membership index
+     */
+    private Set<Long> interestedUsers(Long userId) {
+        Set<Long> interested = new HashSet<>();
+        for (Long conversationId : membershipIndex.conversationsOf(userId)) {
+            interested.addAll(membershipIndex.members(conversationId));
+        }
+        interested.remove(userId);
+        return interested;
+    }
+}
@@ -0,0 +1,162 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.ExpiringLruCache;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.entity.Conversation;
+import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
+import com.chatapp.whatsapp.respository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Resolves the private conversation between two users through its canonical pair key.
+ *
+ * A cache hit costs no query, a miss is one probe on the unique pair-key index, and creation is
+ * an INSERT ... ON CONFLICT DO NOTHING so two concurrent first messages converge on one conversation.
+ */
+@Service
+@Slf4j
+public class PrivateConversationService {
+
+    private static final String INSERT_IF_ABSENT =
+            "INSERT INTO conversations (conversation_type, created_by, created_at, updated_at, private_pair_key) " +
+            "VALUES ('PRIVATE', ?, now(), now(), ?) " +
+            "ON CONFLICT (private_pair_key) DO NOTHING RETURNING id";
+
+    /**
+     * Assign pair keys to private conversations created before the column existed.
+     * If a pair already has duplicates, the oldest conversation gets the key.
+     */
+    private static final String BACKFILL_PAIR_KEYS =
+            "UPDATE conversations c SET private_pair_key = k.pair_key " +
+            "FROM (SELECT DISTINCT ON (pair_key) conversation_id, pair_key FROM (" +
+            "        SELECT cp.conversation_id, MIN(cp.user_id) || ':' || MAX(cp.user_id) AS pair_key " +
+            "        FROM conversation_participants cp " +
+            "        JOIN conversations pc ON pc.id = cp.conversation_id " +
+            "        WHERE pc.conversation_type = 'PRIVATE' AND pc.private_pair_key IS NULL " +
+            "        GROUP BY cp.conversation_id " +
+            "        HAVING COUNT(DISTINCT cp.user_id) = 2) pairs " +
+            "      ORDER BY pair_key, conversation_id) k " +
+            "WHERE c.id = k.conversation_id " +
+            "AND NOT EXISTS (SELECT 1 FROM conversations x WHERE x.private_pair_key = k.pair_key)";
+
+    private final ConversationRepository conversationRepository;
+    private final ConversationParticipantRepository participantRepository;
+    private final MembershipIndex membershipIndex;
+    private final InboxService inboxService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExpiringLruCache<String, Long> conversationIdsByPairKey;
+
+    public PrivateConversationService(ConversationRepository conversationRepository,
+                                      ConversationParticipantRepository participantRepository,
+                                      MembershipIndex membershipIndex,
+                                      InboxService inboxService,
+                                      JdbcTemplate jdbcTemplate,
+                                      @Value("${app.cache.private-conversations.max-size:100000}") int maxSize,
+                                      @Value("${app.cache.private-conversations.ttl:1h}") Duration ttl) {
+        this.conversationRepository = conversationRepository;
+        this.participantRepository = participantRepository;
+        this.membershipIndex = membershipIndex;
+        this.inboxService = inboxService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.conversationIdsByPairKey = new ExpiringLruCache<>(maxSize, ttl);
+    }
+
+    /**
+     * Look up the private conversation between two users without ever creating one
+     */
+    public Optional<Long> findConversationId(Long userId1, Long userId2) {
+        String pairKey = Conversation.privatePairKey(userId1, userId2);
+        Long cached = conversationIdsByPairKey.get(pairKey);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Long> conversationId = conversationRepository.findIdByPrivatePairKey(pairKey);
+        conversationId.ifPresent(id -> cacheAfterCommit(pairKey, id));
+        return conversationId;
+    }
+
+    /**
+     * Get the private conversation between two users, atomically creating it on first contact
+     */
+    @Transactional
+    public Long findOrCreateConversationId(Long userId1, Long userId2) {
+        Optional<Long> existing = findConversationId(userId1, userId2);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        String pairKey = Conversation.privatePairKey(userId1, userId2);
+        List<Long> inserted = jdbcTemplate.query(INSERT_IF_ABSENT, (rs, rowNum) -> rs.getLong(1), userId1, pairKey);
+        if (inserted.isEmpty()) {
+            // Another request won the race; its row is committed once ON CONFLICT returns
+            Long winner = conversationRepository.findIdByPrivatePairKey(pairKey)
+                    .orElseThrow(() -> new IllegalStateException("Private conversation vanished for " + pairKey));
+            cacheAfterCommit(pairKey, winner);
+            return winner;
+        }
+
+        Long conversationId = inserted.get(0);
+        Conversation conversation = conversationRepository.getReferenceById(conversationId);
+        addParticipant(conversation, userId1);
+        if (!userId1.equals(userId2)) {
+            addParticipant(conversation, userId2);
+        }
+        cacheAfterCommit(pairKey, conversationId);
+        return conversationId;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPairKeys() {
+        try {
+            int updated = jdbcTemplate.update(BACKFILL_PAIR_KEYS);
+            if (updated > 0) {
+                log.info("Backfilled private pair keys for {} conversations", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Could not backfill private conversation pair keys: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cache the id only once the surrounding transaction commits, so a rolled-back insert is never served
+     */
+    private void cacheAfterCommit(String pairKey, Long conversationId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    conversationIdsByPairKey.put(pairKey, conversationId);
+                }
+            });
+        } else {
+            conversationIdsByPairKey.put(pairKey, conversationId);
+        }
+    }
+
+    private void addParticipant(Conversation conversation, Long userId) {
+        ConversationParticipant participant = ConversationParticipant.builder()
+                .conversation(conversation)
+                .userId(userId)
+                .role("MEMBER")
+                .isActive(true)
+                .joinedAt(LocalDateTime.now())
+                .build();
+        participantRepository.save(participant);
+        membershipIndex.addMemberAfterCommit(conversation.getId(), userId);
+        inboxService.recordJoin(conversation.getId(), userId);
+    }
+}
@@ -0,0 +1,259 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.cache.ReadWatermarkIndex;
+import com.chatapp.whatsapp.dto.MessageDTO;
+import com.chatapp.whatsapp.dto.ReceiptDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivery and read receipts as per-participant watermarks rather than per-message status.
+ *
+ * Client acks are coalesced in memory per (conversation, user), keeping only the highest message id
+ * of each kind, and flushed periodically as one batched UPDATE per participant that advanced.
+ * Reading 500 messages therefore costs one row update. A message's SENT/DELIVERED/READ status is
+ * derived from the other participants' watermarks when it is rendered.
+ */
+@Service
+@Slf4j
+public class ReceiptService {
+
+    public static final String SENT = "SENT";
+    public static final String DELIVERED = "DELIVERED";
+    public static final String READ = "READ";
+
+    // Watermarks only move forward; a read id of 0 leaves the read watermark alone
+    private static final String ADVANCE_WATERMARKS =
+            "UPDATE conversation_participants SET " +
+            "last_delivered_message_id = GREATEST(COALESCE(last_delivered_message_id, 0), ?), " +
+            "last_read_at = CASE WHEN ? > COALESCE(last_read_message_id, 0) THEN now() ELSE last_read_at END, " +
+            "last_read_message_id = NULLIF(GREATEST(COALESCE(last_read_message_id, 0), ?), 0) " +
+            "WHERE conversation_id = ? AND user_id = ? AND is_active = true";
+
+    // Acks can only cover messages that exist: clamp to the newest message the user's inbox has seen
+    private static final String LATEST_MESSAGE_IDS =
+            "SELECT user_id, conversation_id, last_message_id FROM user_inbox WHERE (user_id, conversation_id) IN (%s)";
+
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final MembershipIndex membershipIndex;
+    private final ReadWatermarkIndex readWatermarkIndex;
+    private final InboxService inboxService;
+    private final ConversationBroadcaster conversationBroadcaster;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<ReceiptKey, PendingReceipt> pending = new ConcurrentHashMap<>();
+    private final Counter acks;
+    private final Counter rowUpdates;
+
+    public ReceiptService(MembershipIndex membershipIndex,
+                          ReadWatermarkIndex readWatermarkIndex,
+                          InboxService inboxService,
+                          ConversationBroadcaster conversationBroadcaster,
+                          JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry) {
+        this.membershipIndex = membershipIndex;
+        this.readWatermarkIndex = readWatermarkIndex;
+        this.inboxService = inboxService;
+        this.conversationBroadcaster = conversationBroadcaster;
+        this.jdbcTemplate = jdbcTemplate;
+        this.acks = Counter.builder("chat.receipts.acks")
+                .description("Delivery/read acks received from clients")
+                .register(meterRegistry);
+        this.rowUpdates = Counter.builder("chat.receipts.row_updates")
+                .description("Participant rows written by receipt flushes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record that everything up to {@code messageId} was delivered to the user's device
+     */
+    public boolean acknowledgeDelivered(Long conversationId, Long userId, Long messageId) {
+        return acknowledge(conversationId, userId, messageId, false);
+    }
+
+    /**
+     * Record that the user has read everything up to {@code messageId}
+     */
+    public boolean acknowledgeRead(Long conversationId, Long userId, Long messageId) {
+        return acknowledge(conversationId, userId, messageId, true);
+    }
+
+    private boolean acknowledge(Long conversationId, Long userId, Long messageId, boolean read) {
+        if (messageId == null || !membershipIndex.isMember(conversationId, userId)) {
+            return false;
+        }
+        acks.increment();
+        pending.merge(new ReceiptKey(conversationId, userId),
+                read ? new PendingReceipt(messageId, messageId) : new PendingReceipt(messageId, null),
+                PendingReceipt::max);
+        return true;
+    }
+
+    /**
+     * Write all coalesced watermark advances in one JDBC batch
+     */
+    @Scheduled(fixedDelayString = "${app.receipts.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<ReceiptKey, PendingReceipt> drained = new HashMap<>();
+        for (ReceiptKey key : List.copyOf(pending.keySet())) {
+            PendingReceipt receipt = pending.remove(key);
+            if (receipt != null) {
+                drained.put(key, receipt);
+            }
+        }
+        Map<ReceiptKey, Long> latest;
+        try {
+            latest = latestMessageIds(drained.keySet());
+        } catch (RuntimeException e) {
+            log.warn("Could not validate {} receipt watermarks, retrying next flush: {}", drained.size(), e.getMessage());
+            drained.forEach((key, receipt) -> pending.merge(key, receipt, PendingReceipt::max));
+            return;
+        }
+
+        List<ReceiptKey> keys = new ArrayList<>();
+        List<PendingReceipt> receipts = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        List<Object[]> readAdvances = new ArrayList<>();
+        for (Map.Entry<ReceiptKey, PendingReceipt> entry : drained.entrySet()) {
+            ReceiptKey key = entry.getKey();
+            PendingReceipt receipt = entry.getValue().clampTo(latest.getOrDefault(key, 0L));
+            if (receipt == null) {
+                continue;
+            }
+            keys.add(key);
+            receipts.add(receipt);
+            // A read ack always carries an equal delivery ack, so delivered >= read
+            long read = orZero(receipt.read());
+            batch.add(new Object[]{receipt.delivered(), read, read, key.conversationId(), key.userId()});
+            if (receipt.read() != null) {
+                readAdvances.add(new Object[]{key.userId(), key.conversationId()});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(ADVANCE_WATERMARKS, batch);
+            inboxService.recountUnread(readAdvances);
+            rowUpdates.increment(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not flush {} receipt watermarks, retrying next flush: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < keys.size(); i++) {
+                pending.merge(keys.get(i), receipts.get(i), PendingReceipt::max);
+            }
+            return;
+        }
+
+        for (int i = 0; i < keys.size(); i++) {
+            ReceiptKey key = keys.get(i);
+            PendingReceipt receipt = receipts.get(i);
+            readWatermarkIndex.advanceDelivered(key.conversationId(), key.userId(), receipt.delivered());
+            readWatermarkIndex.advance(key.conversationId(), key.userId(), receipt.read());
+            conversationBroadcaster.broadcast(key.conversationId(),
+                    conversationBroadcaster.topicOf(key.conversationId()) + "/receipts",
+                    ReceiptDTO.builder()
+                            .conversationId(key.conversationId())
+                            .userId(key.userId())
+                            .lastDeliveredMessageId(receipt.delivered())
+                            .lastReadMessageId(receipt.read())
+                            .build());
+        }
+    }
+
+    /**
+     * Newest message id per (conversation, user) from the inbox read model, which is written in
+     * the same transaction as every message
+     */
+    private Map<ReceiptKey, Long> latestMessageIds(Collection<ReceiptKey> keys) {
+        Map<ReceiptKey, Long> latest = new HashMap<>();
+        List<ReceiptKey> all = new ArrayList<>(keys);
+        for (int from = 0; from < all.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<ReceiptKey> chunk = all.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, all.size()));
+            Object[] args = new Object[chunk.size() * 2];
+            for (int i = 0; i < chunk.size(); i++) {
+                args[2 * i] = chunk.get(i).userId();
+                args[2 * i + 1] = chunk.get(i).conversationId();
+            }
+            String sql = LATEST_MESSAGE_IDS.formatted(String.join(", ", Collections.nCopies(chunk.size(), "(?, ?)")));
+            jdbcTemplate.query(sql, rs -> {
+                latest.put(new ReceiptKey(rs.getLong("conversation_id"), rs.getLong("user_id")),
+                        rs.getLong("last_message_id"));
+            }, args);
+        }
+        return latest;
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Replace the stored per-row status of each message with one derived from the other
+     * participants' watermarks: READ once everyone else has read it, DELIVERED once it reached
+     * everyone else, SENT otherwise. The lowest watermarks come from the in-memory
+     * {@link ReadWatermarkIndex}, one lookup per sender on the page whatever the group size.
+     * Acks count once a flush has clamped and stored them, at most one flush interval later.
+     */
+    public void applyDerivedStatus(Long conversationId, List<MessageDTO> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<Long, long[]> minimaBySender = new HashMap<>();
+        for (MessageDTO message : messages) {
+            long[] minima = minimaBySender.computeIfAbsent(message.getSenderId(), sender -> new long[]{
+                    readWatermarkIndex.minDeliveredExcluding(conversationId, sender),
+                    readWatermarkIndex.minReadExcluding(conversationId, sender)});
+            message.setStatus(message.getId() <= minima[1] ? READ : message.getId() <= minima[0] ? DELIVERED : SENT);
+        }
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private record ReceiptKey(Long conversationId, Long userId) {
+    }
+
+    private record PendingReceipt(Long delivered, Long read) {
+
+        /**
+         * Cap both watermarks at {@code latest}; null when nothing is left to advance
+         */
+        PendingReceipt clampTo(long latest) {
+            Long clampedDelivered = delivered != null ? Math.min(delivered, latest) : null;
+            Long clampedRead = read != null ? Math.min(read, latest) : null;
+            if (orZero(clampedDelivered) <= 0) {
+                return null;
+            }
+            return new PendingReceipt(clampedDelivered, clampedRead != null && clampedRead > 0 ? clampedRead : null);
+        }
+
+        static PendingReceipt max(PendingReceipt a, PendingReceipt b) {
+            return new PendingReceipt(maxOf(a.delivered, b.delivered), maxOf(a.read, b.read));
+        }
+
+        private static Long maxOf(Long a, Long b) {
+            if (a == null) {
+                return b;
+            }
+            return b == null ? a : Math.max(a, b);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.dto.MessageDTO;
+import com.chatapp.whatsapp.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Attachment sends parsed incrementally from the raw multipart request body.
+ *
+ * Form fields ({@code senderId}, {@code conversationId}, optional {@code content}) must come
+ * before the file part. The file part is piped straight into the blob store, which hashes and
+ * counts it as it is written and aborts once the size limit is passed; the MIME type is sniffed
+ * from the first bytes through the same buffered stream. Nothing is spooled by the container,
+ * so each attachment is written to disk exactly once.
+ */
+@Service
+@Slf4j
+public class StreamingAttachmentService {
+
+    public static final String STREAM_PATH = "/api/messages/send/attachment/stream";
+
+    private static final int SNIFF_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+
+    private final MembershipIndex membershipIndex;
+    private final BlobStore blobStore;
+    private final MessageService messageService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.uploads.streaming.max-file-size:104857600}")
+    private long maxFileSize;
+
+    public StreamingAttachmentService(MembershipIndex membershipIndex,
+                                      BlobStore blobStore,
+                                      MessageService messageService,
+                                      MeterRegistry meterRegistry) {
+        this.membershipIndex = membershipIndex;
+        this.blobStore = blobStore;
+        this.messageService = messageService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public MessageDTO ingest(HttpServletRequest request) throws IOException {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new IllegalArgumentException("Expected a multipart/form-data request");
+        }
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+
+        Map<String, String> fields = new HashMap<>();
+        FileItemInputIterator items = upload.getItemIterator(request);
+        while (items.hasNext()) {
+            FileItemInput item = items.next();
+            if (item.isFormField()) {
+                try (InputStream value = item.getInputStream()) {
+                    fields.put(item.getFieldName(), readField(value));
+                }
+                continue;
+            }
+
+            Long senderId = requiredLong(fields, "senderId");
+            Long conversationId = requiredLong(fields, "conversationId");
+            // Reject before a single file byte is written
+            if (!membershipIndex.isMember(conversationId, senderId)) {
+                throw new SecurityException("Not a member of conversation " + conversationId);
+            }
+
+            BlobStore.StoredContent blob;
+            String mimeType;
+            try (InputStream part = new BufferedInputStream(item.getInputStream(), SNIFF_BUFFER_SIZE)) {
+                mimeType = sniff(part, item.getContentType());
+                blob = blobStore.write(part, maxFileSize);
+            }
+            meterRegistry.counter("chat.uploads.streamed.bytes").increment(blob.size());
+            return messageService.sendMessageWithStoredAttachment(senderId, conversationId,
+                    fields.get("content"), item.getName(), mimeType, blob);
+        }
+        throw new IllegalArgumentException("No file part in request");
+    }
+
+    /**
+     * Guess the type from magic bytes, keeping the client's declared type when nothing is recognised
+     */
+    private static String sniff(InputStream part, String declared) throws IOException {
+        String sniffed = URLConnection.guessContentTypeFromStream(part);
+        if (sniffed != null) {
+            return sniffed;
+        }
+        return declared != null ? declared : "application/octet-stream";
+    }
+
+    private static String readField(InputStream value) throws IOException {
+        byte[] bytes = value.readNBytes(MAX_FIELD_BYTES + 1);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Form field too large");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Long requiredLong(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " must be sent before the file part");
+        }
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+}
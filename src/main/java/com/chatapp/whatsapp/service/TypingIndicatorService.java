@@ -0,0 +1,153 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.cache.SenderProfile;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.dto.TypingIndicatorDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory-only typing indicators, published on {@code /topic/conversation/{id}/typing}.
+ *
+ * Keystroke events are coalesced per (conversation, user): "typing" is published at most once per
+ * throttle window, and a user who stops sending events is published as "stopped typing" by the
+ * expiry sweep. Nothing here reads or writes the database: membership and usernames come only from
+ * what is already cached, so events for a conversation whose members are not loaded are dropped
+ * (subscribing loads them, so nobody is listening yet) and an uncached sender is published by id alone.
+ */
+@Service
+@Slf4j
+public class TypingIndicatorService {
+
+    private final ConversationBroadcaster conversationBroadcaster;
+    private final MembershipIndex membershipIndex;
+    private final SenderProfileCache senderProfileCache;
+    private final Map<TypingKey, TypingState> typing = new ConcurrentHashMap<>();
+    private final Counter published;
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    @Value("${app.typing.throttle-ms:3000}")
+    private long throttleMillis;
+
+    @Value("${app.typing.expiry-ms:6000}")
+    private long expiryMillis;
+
+    public TypingIndicatorService(ConversationBroadcaster conversationBroadcaster,
+                                  MembershipIndex membershipIndex,
+                                  SenderProfileCache senderProfileCache,
+                                  MeterRegistry meterRegistry) {
+        this.conversationBroadcaster = conversationBroadcaster;
+        this.membershipIndex = membershipIndex;
+        this.senderProfileCache = senderProfileCache;
+        this.published = Counter.builder("chat.typing.events")
+                .tag("outcome", "published")
+                .description("Typing state changes published to subscribers")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("chat.typing.events")
+                .tag("outcome", "coalesced")
+                .description("Typing events absorbed by the throttle window")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.typing.events")
+                .tag("outcome", "dropped")
+                .description("Typing events from non-members or for conversations whose members are not cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a typing event from a conversation member. Returns false if the conversation's members are
+     * cached and the user is not one of them; events for uncached conversations are dropped without a verdict.
+     */
+    public boolean onTyping(Long conversationId, Long userId, boolean isTyping) {
+        Set<Long> members = membershipIndex.loadedMembers(conversationId);
+        if (!members.contains(userId)) {
+            dropped.increment();
+            log.debug("Ignoring typing event from {} in conversation {}: not a cached member", userId, conversationId);
+            return members.isEmpty();
+        }
+        TypingKey key = new TypingKey(conversationId, userId);
+        long now = System.currentTimeMillis();
+
+        if (!isTyping) {
+            if (typing.remove(key) != null) {
+                publish(key, false);
+            }
+            return true;
+        }
+
+        boolean[] publishNow = new boolean[1];
+        typing.compute(key, (k, state) -> {
+            if (state == null || now - state.publishedAt >= throttleMillis) {
+                publishNow[0] = true;
+                return new TypingState(now, now + expiryMillis);
+            }
+            state.expiresAt = now + expiryMillis;
+            return state;
+        });
+        if (publishNow[0]) {
+            publish(key, true);
+        } else {
+            coalesced.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Publish "stopped typing" for everyone whose last event is older than the expiry window
+     */
+    @Scheduled(fixedDelayString = "${app.typing.sweep-interval-ms:1000}")
+    public void expireStaleTyping() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<TypingKey, TypingState> entry : typing.entrySet()) {
+            if (entry.getValue().expiresAt > now) {
+                continue;
+            }
+            // A keystroke may have extended the same state since it was read; re-check under the entry's lock
+            boolean[] expired = new boolean[1];
+            typing.computeIfPresent(entry.getKey(), (key, state) -> {
+                expired[0] = state.expiresAt <= now;
+                return expired[0] ? null : state;
+            });
+            if (expired[0]) {
+                publish(entry.getKey(), false);
+            }
+        }
+    }
+
+    private void publish(TypingKey key, boolean isTyping) {
+        SenderProfile sender = senderProfileCache.getIfCached(key.userId());
+        TypingIndicatorDTO indicator = TypingIndicatorDTO.builder()
+                .conversationId(key.conversationId())
+                .senderId(key.userId())
+                .senderUsername(sender != null ? sender.getUsername() : null)
+                .isTyping(isTyping)
+                .build();
+        conversationBroadcaster.broadcast(key.conversationId(),
+                conversationBroadcaster.topicOf(key.conversationId()) + "/typing", indicator);
+        published.increment();
+        log.debug("Published typing={} for user {} in conversation {}", isTyping, key.userId(), key.conversationId());
+    }
+
+    private record TypingKey(Long conversationId, Long userId) {
+    }
+
+    private static final class TypingState {
+        final long publishedAt;
+        volatile long expiresAt;
+
+        TypingState(long publishedAt, long expiresAt) {
+            this.publishedAt = publishedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
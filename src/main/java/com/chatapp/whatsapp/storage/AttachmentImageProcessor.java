@@ -0,0 +1,239 @@
+package com.chatapp.whatsapp.storage;
+
+import com.chatapp.whatsapp.entity.MessageAttachment;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills in dimensions, thumbnails, a recompressed preview and a BlurHash placeholder for image
+ * attachments, off the upload path.
+ *
+ * Work is queued once the attachment's transaction commits and handled by a small fixed pool
+ * with a bounded queue; when the queue is full the image is skipped rather than slowing uploads,
+ * and a low-rate sweep later re-queues image rows that still have no BlurHash into spare capacity.
+ * Each image is decoded once and every variant is derived from that decode. Variants are stored
+ * next to the blob, so identical content uploaded again reuses them without decoding at all.
+ */
+@Component
+@Slf4j
+public class AttachmentImageProcessor {
+
+    public static final String SMALL_THUMBNAIL = "thumb-96.jpg";
+    public static final String THUMBNAIL = "thumb-320.jpg";
+    public static final String PREVIEW = "preview-1280.jpg";
+    public static final List<String> VARIANTS = List.of(SMALL_THUMBNAIL, THUMBNAIL, PREVIEW);
+
+    private static final int PREVIEW_QUALITY = 80;
+    private static final float THUMBNAIL_QUALITY = 0.75f;
+    private static final int BLURHASH_EDGE = 32;
+
+    private static final String FIND_PROCESSED_TWIN =
+            "SELECT width, height, compression_quality, blurhash FROM message_attachments " +
+            "WHERE blob_hash = ? AND blurhash IS NOT NULL AND id <> ? LIMIT 1";
+
+    // Served by the partial index idx_message_attachments_unprocessed_images
+    private static final String NEXT_UNPROCESSED =
+            "SELECT id, blob_hash FROM message_attachments " +
+            "WHERE blurhash IS NULL AND blob_hash IS NOT NULL AND mime_type LIKE 'image/%' AND id > ? " +
+            "ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_ATTACHMENT =
+            "UPDATE message_attachments SET width = ?, height = ?, thumbnail_path = ?, " +
+            "is_compressed = true, compression_quality = ?, blurhash = ? WHERE id = ?";
+
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Timer processingTimer;
+    private final long maxPixels;
+    private final int sweepBatchSize;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    // Sweep position, so rows that keep failing do not hold back the ones after them
+    private long sweepCursor;
+
+    public AttachmentImageProcessor(BlobStore blobStore,
+                                    JdbcTemplate jdbcTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.images.workers:2}") int workers,
+                                    @Value("${app.images.queue-capacity:1000}") int queueCapacity,
+                                    @Value("${app.images.max-pixels:40000000}") long maxPixels,
+                                    @Value("${app.images.sweep.batch-size:100}") int sweepBatchSize) {
+        this.blobStore = blobStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.maxPixels = maxPixels;
+        this.sweepBatchSize = sweepBatchSize;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "attachment-images-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.processingTimer = Timer.builder("chat.attachments.images.processing")
+                .description("Time to decode one image and write all of its variants")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.attachments.images.queue_depth", executor.getQueue(), BlockingQueue::size)
+                .description("Image attachments waiting for variant extraction")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue an image attachment for processing once the current transaction commits
+     */
+    public void processAfterCommit(MessageAttachment attachment) {
+        if (!attachment.isImage() || attachment.getBlobHash() == null) {
+            return;
+        }
+        Long attachmentId = attachment.getId();
+        String hash = attachment.getBlobHash();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(attachmentId, hash);
+                }
+            });
+        } else {
+            submit(attachmentId, hash);
+        }
+    }
+
+    /**
+     * Re-queue image attachments that were skipped (queue full, node restarted) or failed, using only
+     * the queue capacity left over by new uploads. Walks the table by id and wraps around at the end.
+     */
+    @Scheduled(initialDelayString = "${app.images.sweep.interval-ms:600000}",
+            fixedDelayString = "${app.images.sweep.interval-ms:600000}")
+    public synchronized void sweepUnprocessed() {
+        int limit = Math.min(sweepBatchSize, executor.getQueue().remainingCapacity() / 2);
+        if (limit <= 0) {
+            return;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(NEXT_UNPROCESSED, sweepCursor, limit);
+        for (Map<String, Object> row : rows) {
+            Long attachmentId = ((Number) row.get("id")).longValue();
+            if (!pending.contains(attachmentId)) {
+                record("swept");
+                submit(attachmentId, (String) row.get("blob_hash"));
+            }
+            sweepCursor = attachmentId;
+        }
+        if (rows.size() < limit) {
+            sweepCursor = 0;
+        }
+    }
+
+    private void submit(Long attachmentId, String hash) {
+        if (!pending.add(attachmentId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    processingTimer.record(() -> process(attachmentId, hash));
+                } finally {
+                    pending.remove(attachmentId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(attachmentId);
+            record("rejected");
+            log.debug("Image queue full, attachment {} left for the sweep", attachmentId);
+        }
+    }
+
+    private void process(Long attachmentId, String hash) {
+        try {
+            if (reuseTwin(attachmentId, hash)) {
+                record("reused");
+                return;
+            }
+            BufferedImage source = Images.decode(blobStore.pathOf(hash), maxPixels);
+            if (source == null) {
+                record("unsupported");
+                return;
+            }
+
+            writeJpeg(Images.scaleToFit(source, 96), hash, SMALL_THUMBNAIL, THUMBNAIL_QUALITY);
+            Path thumbnail = writeJpeg(Images.scaleToFit(source, 320), hash, THUMBNAIL, THUMBNAIL_QUALITY);
+            writeJpeg(Images.scaleToFit(source, 1280), hash, PREVIEW, PREVIEW_QUALITY / 100f);
+            String blurhash = BlurHash.encode(Images.scaleToFit(source, BLURHASH_EDGE), 4, 3);
+
+            jdbcTemplate.update(UPDATE_ATTACHMENT, source.getWidth(), source.getHeight(),
+                    thumbnail.toString(), PREVIEW_QUALITY, blurhash, attachmentId);
+            record("processed");
+        } catch (Exception e) {
+            record("failed");
+            log.warn("Could not process image attachment {}: {}", attachmentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Copy the results of an earlier attachment with the same content, if its variants are still on disk
+     */
+    private boolean reuseTwin(Long attachmentId, String hash) {
+        List<Map<String, Object>> twins = jdbcTemplate.queryForList(FIND_PROCESSED_TWIN, hash, attachmentId);
+        if (twins.isEmpty()) {
+            return false;
+        }
+        for (String variant : VARIANTS) {
+            if (!Files.exists(blobStore.variantPath(hash, variant))) {
+                return false;
+            }
+        }
+        Map<String, Object> twin = twins.get(0);
+        jdbcTemplate.update(UPDATE_ATTACHMENT, twin.get("width"), twin.get("height"),
+                blobStore.variantPath(hash, THUMBNAIL).toString(), twin.get("compression_quality"),
+                twin.get("blurhash"), attachmentId);
+        return true;
+    }
+
+    private Path writeJpeg(BufferedImage image, String hash, String variant, float quality) throws IOException {
+        Path temp = blobStore.newTempFile();
+        try {
+            Images.writeJpeg(image, temp, quality);
+            return blobStore.publishVariant(temp, hash, variant);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("chat.attachments.images", "outcome", outcome).increment();
+    }
+}
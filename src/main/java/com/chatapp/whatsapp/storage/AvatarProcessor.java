@@ -0,0 +1,163 @@
+package com.chatapp.whatsapp.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates fixed-size square JPEG variants of profile photos, off the request path.
+ *
+ * Photos are stored under a random name that is never reused, so the variants derived from one
+ * are immutable and live under {@code avatars/} keyed by that name. Work runs on a small pool
+ * with a bounded queue; a photo already queued is not queued again. Photos uploaded before
+ * variants existed are picked up the first time their avatar is requested.
+ */
+@Component
+@Slf4j
+public class AvatarProcessor {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+
+    // Longest edge in pixels per variant, smallest first
+    public static final Map<String, Integer> SIZES;
+
+    static {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        sizes.put(SMALL, 64);
+        sizes.put(MEDIUM, 256);
+        SIZES = Collections.unmodifiableMap(sizes);
+    }
+
+    private static final float QUALITY = 0.8f;
+
+    private final Path uploadRoot;
+    private final Path avatarDir;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // Photos that could not be decoded or processed; not retried on every request
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+    private final long maxPixels;
+
+    public AvatarProcessor(MeterRegistry meterRegistry,
+                           @Value("${app.upload.dir:uploads}") String uploadDir,
+                           @Value("${app.avatars.workers:1}") int workers,
+                           @Value("${app.avatars.queue-capacity:500}") int queueCapacity,
+                           @Value("${app.images.max-pixels:40000000}") long maxPixels) throws IOException {
+        this.meterRegistry = meterRegistry;
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.avatarDir = Files.createDirectories(uploadRoot.resolve("avatars"));
+        this.maxPixels = maxPixels;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-variants-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("chat.avatars.queue_depth", executor.getQueue(), BlockingQueue::size)
+                .description("Profile photos waiting for variant generation")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The stored original for a photo path as kept on the user row, or null if it is not a local upload
+     */
+    public Path originalPath(String photoPath) {
+        if (photoPath == null || photoPath.isBlank()) {
+            return null;
+        }
+        Path file = uploadRoot.resolve(photoPath).normalize();
+        return file.startsWith(uploadRoot) && !file.startsWith(avatarDir) ? file : null;
+    }
+
+    public Path variantPath(String photoPath, String size) {
+        String name = Paths.get(photoPath).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        return avatarDir.resolve(stem + "-" + size + ".jpg");
+    }
+
+    /**
+     * Queue variant generation for a photo unless it is already queued
+     */
+    public void processAsync(String photoPath) {
+        if (originalPath(photoPath) == null || unsupported.contains(photoPath) || !inFlight.add(photoPath)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(photoPath);
+                } finally {
+                    inFlight.remove(photoPath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(photoPath);
+            record("rejected");
+            log.debug("Avatar queue full, skipping {}", photoPath);
+        }
+    }
+
+    private void process(String photoPath) {
+        try {
+            Path original = originalPath(photoPath);
+            BufferedImage source = Files.isReadable(original) ? Images.decode(original, maxPixels) : null;
+            if (source == null) {
+                unsupported.add(photoPath);
+                record("unsupported");
+                return;
+            }
+            BufferedImage square = Images.cropToSquare(source);
+            for (Map.Entry<String, Integer> size : SIZES.entrySet()) {
+                Path temp = Files.createTempFile(avatarDir, "avatar-", ".tmp");
+                try {
+                    Images.writeJpeg(Images.scaleToFit(square, size.getValue()), temp, QUALITY);
+                    Files.move(temp, variantPath(photoPath, size.getKey()),
+                            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            record("processed");
+        } catch (Exception e) {
+            unsupported.add(photoPath);
+            record("failed");
+            log.warn("Could not generate avatar variants for {}: {}", photoPath, e.getMessage());
+        }
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("chat.avatars.variants", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,319 @@
+package com.chatapp.whatsapp.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for attachment bytes: each distinct content is kept once on disk
+ * under its SHA-256 ({@code <dir>/ab/cd/abcd...}) and reference-counted in stored_blobs.
+ *
+ * Content is hashed while it is streamed to a temp file, then renamed into place; if the hash
+ * is already present the temp file is simply dropped, so a duplicate upload ends up as a
+ * metadata-only insert. Owners call {@link #acquire} / {@link #release} in their own transaction.
+ * Blobs whose count has stayed at zero for the grace period are collected in the background.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCK_STRIPES = 64;
+
+    private static final String ENSURE_ROW =
+            "INSERT INTO stored_blobs (hash, size_bytes, ref_count, created_at, updated_at) " +
+            "VALUES (?, ?, 0, now(), now()) " +
+            "ON CONFLICT (hash) DO UPDATE SET updated_at = now()";
+
+    private static final String ACQUIRE =
+            "UPDATE stored_blobs SET ref_count = ref_count + 1, updated_at = now() WHERE hash = ?";
+
+    private static final String RELEASE =
+            "UPDATE stored_blobs SET ref_count = GREATEST(ref_count - 1, 0), updated_at = now() WHERE hash = ?";
+
+    private static final String NEXT_UNREFERENCED =
+            "SELECT hash FROM stored_blobs WHERE ref_count = 0 AND updated_at < ? ORDER BY updated_at LIMIT ?";
+
+    private static final String DELETE_UNREFERENCED =
+            "DELETE FROM stored_blobs WHERE hash = ? AND ref_count = 0 AND updated_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate independentTransaction;
+    private final Path root;
+    private final Path tempDir;
+    private final Duration gcGrace;
+    private final int gcBatchSize;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Counter newBlobs;
+    private final Counter duplicateBlobs;
+    private final Counter deduplicatedBytes;
+    private final Counter collectedBlobs;
+
+    public BlobStore(JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     MeterRegistry meterRegistry,
+                     @Value("${app.blob-store.dir:uploads/blobs}") String dir,
+                     @Value("${app.blob-store.gc.grace:PT1H}") Duration gcGrace,
+                     @Value("${app.blob-store.gc.batch-size:500}") int gcBatchSize) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.independentTransaction = new TransactionTemplate(transactionManager);
+        this.independentTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.tempDir = root.resolve("tmp");
+        this.gcGrace = gcGrace;
+        this.gcBatchSize = gcBatchSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(tempDir);
+
+        this.newBlobs = Counter.builder("chat.blobs.writes").tag("result", "new")
+                .description("Attachment contents written to the blob store").register(meterRegistry);
+        this.duplicateBlobs = Counter.builder("chat.blobs.writes").tag("result", "duplicate")
+                .description("Attachment contents written to the blob store").register(meterRegistry);
+        this.deduplicatedBytes = Counter.builder("chat.blobs.deduplicated.bytes")
+                .description("Bytes not stored again because identical content already existed")
+                .baseUnit("bytes").register(meterRegistry);
+        this.collectedBlobs = Counter.builder("chat.blobs.collected")
+                .description("Unreferenced blobs removed by garbage collection").register(meterRegistry);
+    }
+
+    /**
+     * Stream content into the store, hashing it on the way. Fails with IllegalArgumentException,
+     * leaving nothing behind, as soon as more than {@code maxBytes} have been read.
+     */
+    public StoredContent write(InputStream content, long maxBytes) throws IOException {
+        Path temp = newTempFile();
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("File size exceeds " + maxBytes + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            return adopt(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A fresh file in the store's temp directory, on the same filesystem as the blobs so it can be renamed into place
+     */
+    public Path newTempFile() throws IOException {
+        return Files.createFile(tempDir.resolve(UUID.randomUUID() + ".part"));
+    }
+
+    /**
+     * A file for a long-lived upload session, outside the temp directory swept by garbage collection
+     * but on the same filesystem, so {@link #adopt} can rename it into place when the upload completes
+     */
+    public Path newSessionFile(String sessionId) throws IOException {
+        Path sessions = root.resolve("sessions");
+        Files.createDirectories(sessions);
+        return Files.createFile(sessions.resolve(sessionId + ".part"));
+    }
+
+    /**
+     * Move a fully written temp file into the store under its (already computed) hash.
+     * The temp file is consumed either way. The returned blob has no references yet.
+     */
+    public StoredContent adopt(Path tempFile, String hash, long size) throws IOException {
+        Path target = pathOf(hash);
+        synchronized (lockFor(hash)) {
+            // The row is touched first, so garbage collection can no longer pick this blob up
+            independentTransaction.executeWithoutResult(status -> jdbcTemplate.update(ENSURE_ROW, hash, size));
+            if (Files.exists(target)) {
+                Files.deleteIfExists(tempFile);
+                duplicateBlobs.increment();
+                deduplicatedBytes.increment(size);
+                return new StoredContent(hash, size, target, true);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(tempFile);
+                duplicateBlobs.increment();
+                deduplicatedBytes.increment(size);
+                return new StoredContent(hash, size, target, true);
+            }
+            newBlobs.increment();
+            return new StoredContent(hash, size, target, false);
+        }
+    }
+
+    /**
+     * Add a reference, in the caller's transaction. The blob must have been written within the grace period.
+     */
+    public void acquire(String hash) {
+        if (jdbcTemplate.update(ACQUIRE, hash) == 0) {
+            throw new IllegalStateException("Unknown blob " + hash);
+        }
+    }
+
+    /**
+     * Drop a reference, in the caller's transaction; the blob is collected once unreferenced past the grace period
+     */
+    public void release(String hash) {
+        if (hash != null) {
+            jdbcTemplate.update(RELEASE, hash);
+        }
+    }
+
+    public Path pathOf(String hash) {
+        requireValid(hash);
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Location of a file derived from a blob (e.g. a thumbnail). Derived files depend only on the
+     * content, so they are shared by every attachment with that content and collected with the blob.
+     */
+    public Path variantPath(String hash, String variant) {
+        if (variant == null || !variant.matches("[a-z0-9][a-z0-9.-]*")) {
+            throw new IllegalArgumentException("Invalid variant name");
+        }
+        return variantDir(hash).resolve(variant);
+    }
+
+    /**
+     * Atomically publish a fully written temp file as a derived file of a blob
+     */
+    public Path publishVariant(Path tempFile, String hash, String variant) throws IOException {
+        Path target = variantPath(hash, variant);
+        Files.createDirectories(target.getParent());
+        Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * Delete blobs that have had no references for the whole grace period, then temp files left by interrupted writes
+     */
+    @Scheduled(initialDelayString = "${app.blob-store.gc.interval-ms:3600000}",
+            fixedDelayString = "${app.blob-store.gc.interval-ms:3600000}")
+    public void collectGarbage() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(gcGrace));
+        int collected = 0;
+        List<String> hashes;
+        do {
+            hashes = jdbcTemplate.queryForList(NEXT_UNREFERENCED, String.class, cutoff, gcBatchSize);
+            for (String hash : hashes) {
+                synchronized (lockFor(hash)) {
+                    if (jdbcTemplate.update(DELETE_UNREFERENCED, hash, cutoff) == 0) {
+                        continue;
+                    }
+                    try {
+                        Files.deleteIfExists(pathOf(hash));
+                        deleteVariants(hash);
+                        collected++;
+                    } catch (IOException e) {
+                        log.warn("Could not delete blob file {}: {}", hash, e.getMessage());
+                    }
+                }
+            }
+        } while (hashes.size() == gcBatchSize);
+
+        collectedBlobs.increment(collected);
+        if (collected > 0) {
+            log.info("Collected {} unreferenced blobs", collected);
+        }
+        deleteStaleTempFiles(Instant.now().minus(gcGrace));
+    }
+
+    private void deleteVariants(String hash) throws IOException {
+        Path dir = variantDir(hash);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private Path variantDir(String hash) {
+        requireValid(hash);
+        return root.resolve("variants").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void requireValid(String hash) {
+        if (hash == null || hash.length() != 64 || !hash.chars().allMatch(c -> HexFormat.isHexDigit(c))) {
+            throw new IllegalArgumentException("Invalid blob hash");
+        }
+    }
+
+    private void deleteStaleTempFiles(Instant cutoff) {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            files.filter(file -> {
+                try {
+                    return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+                } catch (IOException e) {
+                    return false;
+                }
+            }).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete stale temp file {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not list blob temp directory: {}", e.getMessage());
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Where a piece of content lives, and whether identical content was already stored
+     */
+    public record StoredContent(String hash, long size, Path path, boolean duplicate) {
+    }
+}
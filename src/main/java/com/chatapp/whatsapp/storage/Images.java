@@ -0,0 +1,212 @@
+package com.chatapp.whatsapp.storage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decoding, downscaling and JPEG encoding shared by the attachment and avatar processors.
+ * Decoded images are turned upright according to their EXIF orientation, so every variant
+ * derived from them (and the dimensions reported for them) matches what cameras meant.
+ */
+final class Images {
+
+    private Images() {
+    }
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+    private static final int MAX_HEADER_BYTES = 128 * 1024;
+
+    /**
+     * Decode the image upright, or return null when no reader supports it or it exceeds the pixel budget
+     */
+    static BufferedImage decode(Path file, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Check the header before allocating the raster so a huge image cannot exhaust the heap
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    return null;
+                }
+                return orient(reader.read(0), exifOrientation(file));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The EXIF orientation (1-8) of a JPEG file, or 1 when it has none or is not a JPEG
+     */
+    static int exifOrientation(Path file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(MAX_HEADER_BYTES);
+        }
+        if (header.length < 4 || (header[0] & 0xFF) != 0xFF || (header[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        // Walk the marker segments up to the start of the image data, looking for APP1 "Exif\0\0"
+        int offset = 2;
+        while (offset + 4 <= header.length && (header[offset] & 0xFF) == 0xFF) {
+            int marker = header[offset + 1] & 0xFF;
+            int length = ((header[offset + 2] & 0xFF) << 8) | (header[offset + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                break;
+            }
+            int segment = offset + 4;
+            if (marker == 0xE1 && segment + 6 <= header.length && new String(header, segment, 4, StandardCharsets.US_ASCII).equals("Exif")) {
+                return orientationFromTiff(header, segment + 6, Math.min(header.length, offset + 2 + length));
+            }
+            offset += 2 + length;
+        }
+        return 1;
+    }
+
+    /**
+     * Read the orientation tag from IFD0 of the TIFF structure inside an EXIF segment
+     */
+    private static int orientationFromTiff(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        int ifd = tiff + readInt(data, tiff + 4, littleEndian);
+        if (ifd < tiff || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(data, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                int orientation = readShort(data, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Apply an EXIF orientation so the image is upright
+     */
+    static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return source;
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        boolean swapsEdges = orientation >= 5;
+        // Maps source pixels to upright ones: (m00, m10, m01, m11, m02, m12), i.e. x' = m00*x + m01*y + m02
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);      // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // rotated 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);     // mirrored vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);           // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);     // needs 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // transversed
+            default -> new AffineTransform(0, -1, 1, 0, 0, width);     // needs 90 counter-clockwise
+        };
+        BufferedImage target = new BufferedImage(swapsEdges ? height : width, swapsEdges ? width : height,
+                source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Downscale so the longest edge is at most {@code maxEdge}, halving repeatedly first for smoother results
+     */
+    static BufferedImage scaleToFit(BufferedImage source, int maxEdge) {
+        double ratio = Math.min(1.0, (double) maxEdge / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+
+    /**
+     * The largest centred square of the image
+     */
+    static BufferedImage cropToSquare(BufferedImage source) {
+        int edge = Math.min(source.getWidth(), source.getHeight());
+        return source.getSubimage((source.getWidth() - edge) / 2, (source.getHeight() - edge) / 2, edge, edge);
+    }
+
+    static void writeJpeg(BufferedImage image, Path target, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            // JPEG has no alpha; flatten transparency onto white like chat clients do
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean littleEndian) {
+        int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,109 @@
+package com.chatapp.whatsapp.broadcast;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Simulates three nodes in one JVM over the in-memory backplane and checks that a publish on one
+ * node reaches exactly the other nodes that have subscribers for the conversation. This covers the
+ * routing in the broadcaster and subscription registry only; the PostgreSQL transport is exercised
+ * by {@link PostgresBrokerBackplaneTest}.
+ */
+class BrokerBackplaneMultiNodeTest {
+
+    private static final Long CONVERSATION_ID = 42L;
+    private static final String DESTINATION = ConversationBroadcaster.CONVERSATION_TOPIC_PREFIX + CONVERSATION_ID;
+
+    private Node nodeA;
+    private Node nodeB;
+    private Node nodeC;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryBackplaneBus bus = new InMemoryBackplaneBus();
+        nodeA = new Node("node-a", bus);
+        nodeB = new Node("node-b", bus);
+        nodeC = new Node("node-c", bus);
+    }
+
+    @Test
+    void publishReachesOnlyNodesWithSubscribers() {
+        nodeA.registry.subscribe("session-a", "sub-1", DESTINATION);
+        nodeB.registry.subscribe("session-b", "sub-1", DESTINATION);
+        nodeC.registry.subscribe("session-c", "sub-1", ConversationBroadcaster.CONVERSATION_TOPIC_PREFIX + 7);
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "hello"));
+
+        assertEquals(1, nodeA.delivered.size(), "origin delivers through its local broker");
+        assertEquals(1, nodeB.delivered.size(), "subscribed remote node receives the relay");
+        assertTrue(nodeC.delivered.isEmpty(), "node without subscribers for the conversation gets nothing");
+
+        Message<?> relayed = nodeB.delivered.get(0);
+        assertEquals(DESTINATION, SimpMessageHeaderAccessor.getDestination(relayed.getHeaders()));
+        String json = new String((byte[]) relayed.getPayload(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"content\":\"hello\""));
+        assertEquals(1, nodeB.meters.get("chat.broadcast.fanout.latency").timer().count());
+        assertSame(nodeA.delivered.get(0).getPayload(), relayed.getPayload(), "payload is serialized once and shared");
+    }
+
+    @Test
+    void nodeStopsReceivingOnceItsLastSubscriberLeaves() {
+        nodeB.registry.subscribe("session-b", "sub-1", DESTINATION);
+        nodeB.registry.subscribe("session-b", "sub-2", DESTINATION + "/typing");
+        nodeB.registry.unsubscribe("session-b", "sub-1");
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "still subscribed"));
+        assertEquals(1, nodeB.delivered.size());
+
+        nodeB.registry.disconnect("session-b");
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "gone"));
+        assertEquals(1, nodeB.delivered.size());
+        assertEquals(0, nodeB.registry.subscribedConversations());
+    }
+
+    @Test
+    void deliveriesCountOnlySubscriptionsToTheDestinationSentTo() {
+        nodeA.registry.subscribe("session-1", "sub-1", DESTINATION);
+        nodeA.registry.subscribe("session-1", "sub-2", DESTINATION + "/typing");
+        nodeA.registry.subscribe("session-2", "sub-1", DESTINATION);
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, DESTINATION + "/typing", Map.of("isTyping", true));
+        assertEquals(1, nodeA.meters.get("chat.broadcast.deliveries").counter().count());
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "hello"));
+        assertEquals(3, nodeA.meters.get("chat.broadcast.deliveries").counter().count());
+
+        nodeA.registry.disconnect("session-1");
+        assertEquals(1, nodeA.registry.localSubscriptions(DESTINATION));
+        assertEquals(0, nodeA.registry.localSubscriptions(DESTINATION + "/typing"));
+    }
+
+    private static class Node {
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        final ConversationSubscriptionRegistry registry;
+        final ConversationBroadcaster broadcaster;
+
+        Node(String nodeId, InMemoryBackplaneBus bus) {
+            BrokerBackplane backplane = new InMemoryBrokerBackplane(bus);
+            SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> delivered.add(message));
+            registry = new ConversationSubscriptionRegistry(backplane, meters);
+            broadcaster = new ConversationBroadcaster(template, backplane, registry,
+                    new ObjectMapper().findAndRegisterModules(), meters, nodeId);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.chatapp.whatsapp.broadcast;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs three nodes, each with its own {@link PostgresBrokerBackplane} and its own connections,
+ * against one PostgreSQL database, so publishes really travel through LISTEN/NOTIFY.
+ * Set BACKPLANE_TEST_DB_URL (plus BACKPLANE_TEST_DB_USER / BACKPLANE_TEST_DB_PASSWORD) to run it.
+ */
+@EnabledIfEnvironmentVariable(named = "BACKPLANE_TEST_DB_URL", matches = ".+")
+class PostgresBrokerBackplaneTest {
+
+    private static final int POLL_MILLIS = 50;
+    private static final long DELIVERY_TIMEOUT_MS = 5000;
+    private static final Long CONVERSATION_ID = 9_000_042L;
+    private static final String DESTINATION = ConversationBroadcaster.CONVERSATION_TOPIC_PREFIX + CONVERSATION_ID;
+
+    private Node nodeA;
+    private Node nodeB;
+    private Node nodeC;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new Node("node-a");
+        nodeB = new Node("node-b");
+        nodeC = new Node("node-c");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        nodeA.backplane.stop();
+        nodeB.backplane.stop();
+        nodeC.backplane.stop();
+    }
+
+    @Test
+    void publishReachesOnlyNodesListeningOnTheConversation() throws InterruptedException {
+        nodeB.registry.subscribe("session-b", "sub-1", DESTINATION);
+        nodeC.registry.subscribe("session-c", "sub-1", ConversationBroadcaster.CONVERSATION_TOPIC_PREFIX + 7);
+        awaitListening();
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "hello"));
+
+        assertTrue(awaitDelivery(nodeB, 1), "subscribed node receives the NOTIFY");
+        String json = new String((byte[]) nodeB.delivered.get(0).getPayload(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"content\":\"hello\""), json);
+        assertTrue(nodeC.delivered.isEmpty(), "node not listening on the channel gets nothing");
+    }
+
+    @Test
+    void payloadsTooLargeForNotifyGoThroughTheOverflowTable() throws InterruptedException {
+        nodeB.registry.subscribe("session-b", "sub-1", DESTINATION);
+        awaitListening();
+
+        String large = "x".repeat(PostgresBrokerBackplane.MAX_NOTIFY_BYTES * 2);
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", large));
+
+        assertTrue(awaitDelivery(nodeB, 1));
+        String json = new String((byte[]) nodeB.delivered.get(0).getPayload(), StandardCharsets.UTF_8);
+        assertTrue(json.contains(large));
+    }
+
+    @Test
+    void nodeStopsReceivingAfterItsLastSubscriberLeaves() throws InterruptedException {
+        nodeB.registry.subscribe("session-b", "sub-1", DESTINATION);
+        awaitListening();
+        nodeB.registry.disconnect("session-b");
+        awaitListening();
+
+        nodeA.broadcaster.broadcast(CONVERSATION_ID, Map.of("content", "gone"));
+
+        Thread.sleep(POLL_MILLIS * 10L);
+        assertEquals(0, nodeB.delivered.size());
+    }
+
+    /**
+     * LISTEN/UNLISTEN are applied by each node's listener thread on its next poll
+     */
+    private static void awaitListening() throws InterruptedException {
+        Thread.sleep(POLL_MILLIS * 6L);
+    }
+
+    private static boolean awaitDelivery(Node node, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (node.delivered.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return node.delivered.size() >= count;
+    }
+
+    private static class Node {
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+        final PostgresBrokerBackplane backplane;
+        final ConversationSubscriptionRegistry registry;
+        final ConversationBroadcaster broadcaster;
+
+        Node(String nodeId) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                    System.getenv("BACKPLANE_TEST_DB_URL"),
+                    System.getenv().getOrDefault("BACKPLANE_TEST_DB_USER", "postgres"),
+                    System.getenv().getOrDefault("BACKPLANE_TEST_DB_PASSWORD", ""));
+            backplane = new PostgresBrokerBackplane(dataSource, new JdbcTemplate(dataSource), POLL_MILLIS);
+            backplane.start();
+            SimpleMeterRegistry meters = new SimpleMeterRegistry();
+            SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> delivered.add(message));
+            registry = new ConversationSubscriptionRegistry(backplane, meters);
+            broadcaster = new ConversationBroadcaster(template, backplane, registry,
+                    new ObjectMapper().findAndRegisterModules(), meters, nodeId);
+        }
+    }
+}
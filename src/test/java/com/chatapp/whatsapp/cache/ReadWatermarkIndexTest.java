@@ -0,0 +1,146 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.ConversationParticipant;
+import com.chatapp.whatsapp.respository.ConversationParticipantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The sorted watermark arrays must stay ordered by (watermark, userId) whichever entry moves,
+ * and an advance must not be lost when it races the lazy load of its conversation
+ */
+class ReadWatermarkIndexTest {
+
+    // user -> watermark; sorted: 1@10, 2@20, 3@30, 4@40
+    private static final Map<Long, Long> MARKS = Map.of(1L, 10L, 2L, 20L, 3L, 30L, 4L, 40L);
+
+    @Test
+    void firstEntryMovesPastEveryone() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        watermarks.advance(1L, 50L);
+
+        assertEquals(List.of(1L, 4L, 3L, 2L), furthestFirst(watermarks));
+        assertEquals(1, watermarks.countAtLeast(50, null));
+    }
+
+    @Test
+    void middleEntryMovesBetweenItsNeighbours() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        watermarks.advance(2L, 35L);
+
+        assertEquals(List.of(4L, 2L, 3L, 1L), furthestFirst(watermarks));
+        assertEquals(2, watermarks.countAtLeast(31, null));
+    }
+
+    @Test
+    void lastEntryStaysLast() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        watermarks.advance(4L, 45L);
+
+        assertEquals(List.of(4L, 3L, 2L, 1L), furthestFirst(watermarks));
+        assertEquals(1, watermarks.countAtLeast(45, null));
+        assertEquals(0, watermarks.countAtLeast(46, null));
+    }
+
+    @Test
+    void equalWatermarksAreOrderedByUserId() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        // User 1 ties user 3 and user 2 ties user 4; within a tie the lower user id sorts first
+        watermarks.advance(1L, 30L);
+        watermarks.advance(2L, 40L);
+
+        assertEquals(List.of(4L, 2L, 3L, 1L), furthestFirst(watermarks));
+        assertEquals(4, watermarks.countAtLeast(30, null));
+        assertEquals(2, watermarks.countAtLeast(40, null));
+    }
+
+    @Test
+    void backwardsEqualAndUnknownAdvancesAreIgnored() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        watermarks.advance(3L, 25L);
+        watermarks.advance(3L, 30L);
+        watermarks.advance(99L, 100L);
+
+        assertEquals(List.of(4L, 3L, 2L, 1L), furthestFirst(watermarks));
+        assertEquals(4, watermarks.sizeExcluding(99L));
+    }
+
+    @Test
+    void advanceDuringLoadIsAppliedOnTopOfTheLoadedSnapshot() throws InterruptedException {
+        ConversationParticipantRepository repository = mock(ConversationParticipantRepository.class);
+        CountDownLatch loading = new CountDownLatch(1);
+        when(repository.findByConversationIdAndIsActiveTrue(7L)).thenAnswer(invocation -> {
+            loading.countDown();
+            // Give the advance time to arrive while the (stale) snapshot is still being read
+            Thread.sleep(200);
+            return List.of(participant(1L, 10L), participant(2L, 20L));
+        });
+        ReadWatermarkIndex index = new ReadWatermarkIndex(repository, new SimpleMeterRegistry());
+
+        Thread reader = new Thread(() -> index.readCount(7L, 1L, null));
+        reader.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        index.advance(7L, 1L, 50L);
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertEquals(1, index.readCount(7L, 50L, null));
+        assertEquals(List.of(1L), index.readers(7L, 50L, null, 0, 10));
+    }
+
+    @Test
+    void lowestWatermarkSkipsTheExcludedUser() {
+        ReadWatermarkIndex.Watermarks watermarks = new ReadWatermarkIndex.Watermarks(MARKS);
+
+        assertEquals(10, watermarks.minExcluding(2L));
+        assertEquals(20, watermarks.minExcluding(1L));
+        assertEquals(0, new ReadWatermarkIndex.Watermarks(Map.of(1L, 10L)).minExcluding(1L));
+    }
+
+    @Test
+    void readAdvanceAlsoAdvancesDelivery() {
+        ConversationParticipantRepository repository = mock(ConversationParticipantRepository.class);
+        when(repository.findByConversationIdAndIsActiveTrue(7L)).thenReturn(List.of(
+                participant(1L, 10L, 15L), participant(2L, 20L, 30L), participant(3L, 5L, null)));
+        ReadWatermarkIndex index = new ReadWatermarkIndex(repository, new SimpleMeterRegistry());
+
+        // A read watermark past the stored delivery watermark counts as delivered
+        assertEquals(5, index.minReadExcluding(7L, 1L));
+        assertEquals(5, index.minDeliveredExcluding(7L, 1L));
+
+        index.advance(7L, 3L, 25L);
+        assertEquals(20, index.minReadExcluding(7L, 1L));
+        assertEquals(25, index.minDeliveredExcluding(7L, 1L));
+
+        index.advanceDelivered(7L, 1L, 40L);
+        assertEquals(10, index.minReadExcluding(7L, 3L));
+        assertEquals(30, index.minDeliveredExcluding(7L, 3L));
+    }
+
+    private static List<Long> furthestFirst(ReadWatermarkIndex.Watermarks watermarks) {
+        return watermarks.usersAtLeast(0, null, 0, Integer.MAX_VALUE);
+    }
+
+    private static ConversationParticipant participant(Long userId, Long lastRead) {
+        return participant(userId, lastRead, null);
+    }
+
+    private static ConversationParticipant participant(Long userId, Long lastRead, Long lastDelivered) {
+        return ConversationParticipant.builder().userId(userId).lastReadMessageId(lastRead)
+                .lastDeliveredMessageId(lastDelivered).build();
+    }
+}
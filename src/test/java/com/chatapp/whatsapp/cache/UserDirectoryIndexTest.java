@@ -0,0 +1,56 @@
+package com.chatapp.whatsapp.cache;
+
+import com.chatapp.whatsapp.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Prefix matches come first, then users whose username only contains the term, all from memory
+ */
+class UserDirectoryIndexTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserDirectoryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new UserDirectoryIndex(jdbcTemplate, mock(MembershipIndex.class), new SimpleMeterRegistry(), 2000, 5000);
+        index.put(user(1L, "annabel"));
+        index.put(user(2L, "joanna"));
+        index.put(user(3L, "hannah"));
+        index.put(user(4L, "bob"));
+    }
+
+    @Test
+    void infixMatchesFollowPrefixMatchesByUsername() {
+        assertEquals(List.of(1L, 3L, 2L), index.search("ann", null, 10));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void infixMatchesOnlyFillRemainingPlaces() {
+        assertEquals(List.of(1L, 3L), index.search("ann", null, 2));
+        assertEquals(List.of(1L), index.search("ann", 3L, 1));
+    }
+
+    @Test
+    void renamedUserLosesOldInfixMatches() {
+        index.put(user(2L, "joe"));
+
+        assertEquals(List.of(1L, 3L), index.search("ann", null, 10));
+        assertEquals(List.of(2L), index.search("oe", null, 10));
+    }
+
+    private static User user(Long id, String username) {
+        return User.builder().id(id).username(username).email(username + "@example.com").build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.dto.MessageDTO;
+import com.chatapp.whatsapp.dto.TypingIndicatorDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames encoded from the object and from its JSON must be identical and decode back to the same fields
+ */
+class CompactCborCodecTest {
+
+    private static final LocalDateTime SENT_AT = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+
+    // CBOR does not preserve whether a number was an int or a long
+    private static final Comparator<JsonNode> NUMERICALLY = (a, b) ->
+            a.equals(b) || (a.isNumber() && b.isNumber() && a.longValue() == b.longValue()) ? 0 : 1;
+
+    // Configured like the application's mapper: JSR-310 support, dates as strings
+    private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final CompactCborCodec codec = new CompactCborCodec();
+
+    @Test
+    void messageRoundTripsWithNumericTimestamps() throws Exception {
+        MessageDTO message = MessageDTO.builder()
+                .id(1234L)
+                .conversationId(42L)
+                .senderId(7L)
+                .content("see attached")
+                .messageType("ATTACHMENT")
+                .sentAt(SENT_AT)
+                .isDeleted(false)
+                .isEdited(false)
+                .status("SENT")
+                .senderUsername("alice")
+                .attachments(List.of(MessageDTO.MessageAttachmentDTO.builder()
+                        .id(9L)
+                        .fileName("plan.pdf")
+                        .fileSize(2048L)
+                        .mimeType("application/pdf")
+                        .uploadedAt(SENT_AT)
+                        .build()))
+                .build();
+        byte[] json = jsonMapper.writeValueAsBytes(message);
+
+        byte[] fromObject = codec.encode(message);
+        byte[] fromJson = codec.encodeJson(json);
+
+        assertArrayEquals(fromObject, fromJson, "relayed frames must match frames encoded on the origin node");
+        assertTrue(fromObject.length < json.length, fromObject.length + " bytes vs " + json.length);
+
+        long epochSeconds = SENT_AT.atZone(ZoneId.systemDefault()).toEpochSecond();
+        ObjectNode expected = (ObjectNode) jsonMapper.readTree(json);
+        expected.put("sentAt", epochSeconds);
+        ((ObjectNode) expected.get("attachments").get(0)).put("uploadedAt", epochSeconds);
+        assertTrue(expected.equals(NUMERICALLY, codec.decode(fromObject)), codec.decode(fromObject).toString());
+    }
+
+    @Test
+    void unknownFieldsKeepTheirNames() throws Exception {
+        TypingIndicatorDTO typing = TypingIndicatorDTO.builder()
+                .conversationId(42L)
+                .senderId(7L)
+                .senderUsername("alice")
+                .isTyping(true)
+                .build();
+        ObjectNode payload = jsonMapper.valueToTree(typing);
+        payload.put("notInTheTable", "kept");
+
+        JsonNode decoded = codec.decode(codec.encode(payload));
+
+        assertTrue(payload.equals(NUMERICALLY, decoded), decoded.toString());
+    }
+}
@@ -0,0 +1,72 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.dto.ChatMessageDTO;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * A client must be able to SEND a frame in the same compact CBOR layout it receives
+ */
+class CompactCborMessageConverterTest {
+
+    private static final LocalDateTime SENT_AT = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+
+    private final CompactCborCodec codec = new CompactCborCodec();
+    private final CompactCborMessageConverter converter = new CompactCborMessageConverter(codec);
+
+    @Test
+    void compactFrameRoundTripsIntoTheHandlerPayload() throws Exception {
+        ChatMessageDTO sent = ChatMessageDTO.builder()
+                .conversationId(42L)
+                .senderId(7L)
+                .content("hello")
+                .messageType("TEXT")
+                .sentAt(SENT_AT)
+                .action("SEND_MESSAGE")
+                .attachments(List.of(ChatMessageDTO.AttachmentDTO.builder()
+                        .fileName("plan.pdf")
+                        .fileSize(2048L)
+                        .uploadedAt(SENT_AT)
+                        .build()))
+                .build();
+
+        Object received = converter.fromMessage(frame(codec.encode(sent), WireFormatNegotiationInterceptor.APPLICATION_CBOR),
+                ChatMessageDTO.class);
+
+        assertEquals(sent, received);
+    }
+
+    @Test
+    void stringKeysAndStringTimestampsAreStillAccepted() throws Exception {
+        byte[] cbor = new CBORMapper().writeValueAsBytes(Map.of(
+                "conversationId", 42, "senderId", 7, "content", "hello", "sentAt", "2024-03-01 12:30:15"));
+
+        ChatMessageDTO received = (ChatMessageDTO) converter.fromMessage(
+                frame(cbor, WireFormatNegotiationInterceptor.APPLICATION_CBOR), ChatMessageDTO.class);
+
+        assertEquals(42L, received.getConversationId());
+        assertEquals(SENT_AT, received.getSentAt());
+    }
+
+    @Test
+    void otherContentTypesAreLeftToTheJsonConverter() throws Exception {
+        assertNull(converter.fromMessage(frame(codec.encode(Map.of("content", "hello")), MimeTypeUtils.APPLICATION_JSON),
+                ChatMessageDTO.class));
+    }
+
+    private static Message<byte[]> frame(byte[] payload, MimeType contentType) {
+        return MessageBuilder.withPayload(payload).setHeader(MessageHeaders.CONTENT_TYPE, contentType).build();
+    }
+}
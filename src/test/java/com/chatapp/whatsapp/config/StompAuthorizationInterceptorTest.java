@@ -0,0 +1,82 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Application SENDs are only accepted from sessions that named their user on CONNECT
+ */
+class StompAuthorizationInterceptorTest {
+
+    private final MembershipIndex membershipIndex = mock(MembershipIndex.class);
+    private final StompAuthorizationInterceptor interceptor = new StompAuthorizationInterceptor(membershipIndex);
+    private final Map<String, Object> session = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+    }
+
+    @Test
+    void sendFromAnonymousSessionIsRejected() {
+        Message<byte[]> send = frame(StompCommand.SEND, "/app/chat.sendMessage", null);
+
+        assertThrows(MessageDeliveryException.class, () -> interceptor.preSend(send, null));
+    }
+
+    @Test
+    void sendAfterConnectWithUserIdIsAccepted() {
+        interceptor.preSend(frame(StompCommand.CONNECT, null, "7"), null);
+        Message<byte[]> send = frame(StompCommand.SEND, "/app/chat.sendMessage", null);
+
+        assertSame(send, interceptor.preSend(send, null));
+    }
+
+    @Test
+    void anonymousSendIsAcceptedWhenAuthorizationIsDisabled() {
+        ReflectionTestUtils.setField(interceptor, "enabled", false);
+        Message<byte[]> send = frame(StompCommand.SEND, "/app/chat.sendMessage", null);
+
+        assertSame(send, interceptor.preSend(send, null));
+    }
+
+    @Test
+    void subscriptionNeedsMembership() {
+        interceptor.preSend(frame(StompCommand.CONNECT, null, "7"), null);
+        when(membershipIndex.isMember(42L, 7L)).thenReturn(true);
+
+        Message<byte[]> member = frame(StompCommand.SUBSCRIBE, "/topic/conversation/42", null);
+        assertSame(member, interceptor.preSend(member, null));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/conversation/43", null), null));
+    }
+
+    private Message<byte[]> frame(StompCommand command, String destination, String userId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("session-1");
+        accessor.setSessionAttributes(session);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        if (userId != null) {
+            accessor.setNativeHeader(StompAuthorizationInterceptor.USER_ID_HEADER, userId);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
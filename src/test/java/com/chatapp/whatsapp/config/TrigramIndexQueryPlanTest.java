@@ -0,0 +1,65 @@
+package com.chatapp.whatsapp.config;
+
+import com.chatapp.whatsapp.respository.ConversationRepository;
+import com.chatapp.whatsapp.respository.MessageAttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the similarity searches can be planned as bitmap scans of the pg_trgm indexes.
+ * Sequential scans are disabled, so this shows the indexes match the query predicates, not that
+ * the planner would prefer them at production table sizes. Needs a PostgreSQL database with the application schema and pg_trgm available; set
+ * TRGM_TEST_DB_URL (plus TRGM_TEST_DB_USER / TRGM_TEST_DB_PASSWORD) to run it.
+ */
+@EnabledIfEnvironmentVariable(named = "TRGM_TEST_DB_URL", matches = ".+")
+class TrigramIndexQueryPlanTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                System.getenv("TRGM_TEST_DB_URL"),
+                System.getenv().getOrDefault("TRGM_TEST_DB_USER", "postgres"),
+                System.getenv().getOrDefault("TRGM_TEST_DB_PASSWORD", ""),
+                true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+
+        DatabaseIndexInitializer initializer = new DatabaseIndexInitializer(jdbcTemplate);
+        initializer.initialize();
+        assertTrue(initializer.isTrigramAvailable(), "pg_trgm must be available on the test database");
+
+        // Small test tables would otherwise always be cheaper to scan sequentially
+        jdbcTemplate.execute("SET enable_seqscan = off");
+    }
+
+    @Test
+    void groupNameSearchUsesTrigramIndex() {
+        String plan = explain("SELECT c.* " + ConversationRepository.USER_GROUPS_BY_NAME_SIMILARITY_FROM,
+                new MapSqlParameterSource("name", "project").addValue("userId", 1L));
+        assertTrue(plan.contains("idx_conversations_name_trgm"), plan);
+    }
+
+    @Test
+    void attachmentNameSearchUsesTrigramIndex() {
+        String plan = explain("SELECT ma.* " + MessageAttachmentRepository.USER_ATTACHMENTS_BY_FILE_NAME_SIMILARITY_FROM,
+                new MapSqlParameterSource("fileName", "report").addValue("userId", 1L));
+        assertTrue(plan.contains("idx_message_attachments_file_name_trgm"), plan);
+    }
+
+    private String explain(String sql, MapSqlParameterSource params) {
+        List<String> lines = namedJdbcTemplate.queryForList("EXPLAIN " + sql, params, String.class);
+        return String.join("\n", lines);
+    }
+}
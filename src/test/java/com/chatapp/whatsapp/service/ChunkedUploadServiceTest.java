@@ -0,0 +1,134 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.entity.UploadSession;
+import com.chatapp.whatsapp.respository.UploadSessionRepository;
+import com.chatapp.whatsapp.storage.BlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chunk bits are only ever flipped on the session row, and a write that cannot register on the
+ * row (because completion claimed it) must not touch the file
+ */
+class ChunkedUploadServiceTest {
+
+    private static final String UPLOAD_ID = "upload-1";
+    private static final Long USER_ID = 7L;
+    private static final int CHUNK_SIZE = 4;
+
+    @TempDir
+    Path dir;
+
+    private UploadSessionRepository repository;
+    private MessageService messageService;
+    private ChunkedUploadService service;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = mock(UploadSessionRepository.class);
+        messageService = mock(MessageService.class);
+        service = new ChunkedUploadService(repository, mock(MembershipIndex.class), mock(BlobStore.class),
+                messageService, new SimpleMeterRegistry());
+        file = Files.write(dir.resolve("session"), new byte[10]);
+        UploadSession session = UploadSession.builder()
+                .id(UPLOAD_ID)
+                .userId(USER_ID)
+                .conversationId(42L)
+                .fileName("notes.txt")
+                .totalSize(10L)
+                .chunkSize(CHUNK_SIZE)
+                .tempPath(file.toString())
+                .receivedChunks(new byte[1])
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+        when(repository.findById(UPLOAD_ID)).thenReturn(Optional.of(session));
+    }
+
+    @Test
+    void verifiedChunkSetsItsBitOnTheRow() throws Exception {
+        when(repository.beginChunkWrite(UPLOAD_ID, USER_ID, 1)).thenReturn(1);
+        when(repository.findReceivedChunks(UPLOAD_ID)).thenReturn(new byte[]{0b011});
+
+        int received = service.writeChunk(UPLOAD_ID, USER_ID, 4, sha256("abcd"), body("abcd"));
+
+        assertEquals(2, received);
+        verify(repository).endChunkWrite(UPLOAD_ID, 1, true);
+        assertEquals("abcd", new String(Files.readAllBytes(file), 4, 4, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void checksumMismatchLeavesTheChunkMissing() {
+        when(repository.beginChunkWrite(UPLOAD_ID, USER_ID, 0)).thenReturn(1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(UPLOAD_ID, USER_ID, 0, sha256("other"), body("abcd")));
+
+        verify(repository).endChunkWrite(UPLOAD_ID, 0, false);
+    }
+
+    @Test
+    void writeAfterClaimNeverTouchesTheFile() throws Exception {
+        when(repository.beginChunkWrite(UPLOAD_ID, USER_ID, 2)).thenReturn(0);
+
+        assertThrows(NoSuchElementException.class,
+                () -> service.writeChunk(UPLOAD_ID, USER_ID, 8, sha256("xy"), body("xy")));
+
+        verify(repository, never()).endChunkWrite(any(), anyInt(), eq(true));
+        assertArrayEquals(new byte[10], Files.readAllBytes(file));
+    }
+
+    @Test
+    void completionIsRefusedWhileTheRowCannotBeClaimed() {
+        when(repository.findById(UPLOAD_ID)).thenReturn(Optional.of(UploadSession.builder()
+                .id(UPLOAD_ID).userId(USER_ID).totalSize(10L).chunkSize(CHUNK_SIZE).tempPath(file.toString())
+                .receivedChunks(new byte[]{0b111}).expiresAt(LocalDateTime.now().plusHours(1)).build()));
+        when(repository.claim(eq(UPLOAD_ID), eq(USER_ID), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> service.complete(UPLOAD_ID, USER_ID, null));
+
+        verify(repository).claim(UPLOAD_ID, USER_ID, new byte[]{0b111});
+        verifyNoInteractions(messageService);
+    }
+
+    @Test
+    void allReceivedHasOneBitPerChunk() {
+        assertArrayEquals(new byte[]{(byte) 0xFF, 0b1}, ChunkedUploadService.allReceived(9));
+        assertArrayEquals(new byte[]{(byte) 0xFF}, ChunkedUploadService.allReceived(8));
+    }
+
+    private static ByteArrayInputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String sha256(String text) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
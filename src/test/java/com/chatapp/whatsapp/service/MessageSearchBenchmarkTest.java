@@ -0,0 +1,127 @@
+package com.chatapp.whatsapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the ranked full-text search with the LIKE query it replaces on a few million seeded rows.
+ * Needs a PostgreSQL database; set SEARCH_BENCH_DB_URL (plus SEARCH_BENCH_DB_USER /
+ * SEARCH_BENCH_DB_PASSWORD, and SEARCH_BENCH_ROWS to change the default of 2,000,000) to run it.
+ *
+ * The data lives in temporary tables named like the real ones, which shadow them for this
+ * session only, so the production statements run unchanged and nothing persistent is touched.
+ */
+@EnabledIfEnvironmentVariable(named = "SEARCH_BENCH_DB_URL", matches = ".+")
+class MessageSearchBenchmarkTest {
+
+    private static final int CONVERSATIONS = 2000;
+    private static final int MEMBER_OF = 50;
+    private static final long USER_ID = 1L;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+
+    /**
+     * The deprecated repository query, translated to SQL
+     */
+    private static final String LIKE_ONE_CONVERSATION =
+            "SELECT m.id FROM messages m WHERE m.conversation_id = ? " +
+            "AND LOWER(m.content) LIKE LOWER(CONCAT('%', ?, '%')) AND m.is_deleted = false " +
+            "ORDER BY m.sent_at DESC";
+
+    /**
+     * What LIKE would need to do to cover every conversation of the user, as the new search does
+     */
+    private static final String LIKE_ALL_CONVERSATIONS =
+            "SELECT m.id FROM messages m WHERE m.conversation_id IN (SELECT cp.conversation_id " +
+            "FROM conversation_participants cp WHERE cp.user_id = ? AND cp.is_active = true) " +
+            "AND LOWER(m.content) LIKE LOWER(CONCAT('%', ?, '%')) AND m.is_deleted = false " +
+            "ORDER BY m.sent_at DESC LIMIT 20";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                System.getenv("SEARCH_BENCH_DB_URL"),
+                System.getenv().getOrDefault("SEARCH_BENCH_DB_USER", "postgres"),
+                System.getenv().getOrDefault("SEARCH_BENCH_DB_PASSWORD", ""),
+                true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        int rows = Integer.parseInt(System.getenv().getOrDefault("SEARCH_BENCH_ROWS", "2000000"));
+
+        jdbcTemplate.execute("CREATE TEMP TABLE messages (id BIGINT PRIMARY KEY, conversation_id BIGINT NOT NULL, " +
+                "content TEXT, is_deleted BOOLEAN NOT NULL, sent_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.update("WITH v AS (SELECT ARRAY['meeting', 'tomorrow', 'lunch', 'project', 'deadline', " +
+                "'call', 'weekend', 'report', 'coffee', 'review', 'ticket', 'release', 'holiday', 'invoice', " +
+                "'thanks', 'later', 'office', 'budget', 'draft', 'photo'] AS w) " +
+                "INSERT INTO messages (id, conversation_id, content, is_deleted, sent_at) " +
+                "SELECT g, g % " + CONVERSATIONS + " + 1, " +
+                "array_to_string(ARRAY(SELECT v.w[1 + (random() * 19)::int] FROM generate_series(1, 8 + g % 5)), ' ') " +
+                "|| CASE WHEN g % 5000 = 0 THEN ' zephyr' ELSE '' END, false, " +
+                "TIMESTAMP '2024-01-01' + g * INTERVAL '1 second' " +
+                "FROM generate_series(1, ?) g, v", rows);
+
+        jdbcTemplate.execute("CREATE TEMP TABLE message_search (message_id BIGINT PRIMARY KEY, " +
+                "conversation_id BIGINT NOT NULL, document TSVECTOR NOT NULL)");
+        jdbcTemplate.execute("INSERT INTO message_search SELECT id, conversation_id, to_tsvector('simple', content) FROM messages");
+        jdbcTemplate.execute("CREATE INDEX ON message_search USING GIN (document)");
+        jdbcTemplate.execute("CREATE INDEX ON message_search (conversation_id)");
+        jdbcTemplate.execute("CREATE INDEX ON messages (conversation_id, sent_at)");
+
+        jdbcTemplate.execute("CREATE TEMP TABLE conversation_participants (conversation_id BIGINT NOT NULL, " +
+                "user_id BIGINT NOT NULL, is_active BOOLEAN NOT NULL)");
+        jdbcTemplate.update("INSERT INTO conversation_participants SELECT c, ?, true FROM generate_series(1, ?) c",
+                USER_ID, MEMBER_OF);
+        jdbcTemplate.execute("ANALYZE messages");
+        jdbcTemplate.execute("ANALYZE message_search");
+        jdbcTemplate.execute("ANALYZE conversation_participants");
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void fullTextSearchIsFasterThanLike() {
+        String ftsAll = MessageSearchService.SEARCH.formatted("");
+        String ftsOne = MessageSearchService.SEARCH.formatted("AND s.conversation_id = ? ");
+
+        for (String term : new String[]{"zephyr", "deadline"}) {
+            double likeOne = medianMillis(LIKE_ONE_CONVERSATION, 7L, term);
+            double likeAll = medianMillis(LIKE_ALL_CONVERSATIONS, USER_ID, term);
+            double oneConversation = medianMillis(ftsOne, "simple", term, USER_ID, 7L, 20, 0L);
+            double allConversations = medianMillis(ftsAll, "simple", term, USER_ID, 20, 0L);
+            System.out.printf("term=%-9s LIKE one conversation %8.2f ms | full-text one conversation %8.2f ms | " +
+                    "LIKE all conversations %8.2f ms | full-text all conversations %8.2f ms%n",
+                    term, likeOne, oneConversation, likeAll, allConversations);
+            if (term.equals("zephyr")) {
+                assertTrue(allConversations < likeAll,
+                        "full-text search across conversations should beat LIKE: " + allConversations + " vs " + likeAll);
+            }
+        }
+    }
+
+    private double medianMillis(String sql, Object... args) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            jdbcTemplate.queryForList(sql, Long.class, args);
+        }
+        double[] samples = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            jdbcTemplate.queryForList(sql, Long.class, args);
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_RUNS / 2];
+    }
+}
@@ -0,0 +1,71 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.entity.Message;
+import com.chatapp.whatsapp.entity.MessageAttachment;
+import com.chatapp.whatsapp.respository.MessageAttachmentRepository;
+import com.chatapp.whatsapp.storage.BlobStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Deleting a message must release its blob references and publish the deletion once, however often it is repeated
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageServiceDeleteTest {
+
+    private static final Long MESSAGE_ID = 10L;
+    private static final Long SENDER_ID = 1L;
+    private static final String HASH = "ab".repeat(32);
+
+    @Mock
+    private com.chatapp.whatsapp.repository.MessageRepository messageRepository;
+
+    @Mock
+    private MessageAttachmentRepository attachmentRepository;
+
+    @Mock
+    private MessageSearchService messageSearchService;
+
+    @Mock
+    private InboxService inboxService;
+
+    @Mock
+    private ConversationBroadcaster conversationBroadcaster;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @InjectMocks
+    private MessageService messageService;
+
+    @Test
+    void deletingTheSameMessageTwiceReleasesItsBlobOnce() {
+        Message message = Message.builder().id(MESSAGE_ID).conversationId(5L).senderId(SENDER_ID).build();
+        when(messageRepository.findById(MESSAGE_ID)).thenReturn(Optional.of(message));
+        // The conditional update flips the flag the first time and matches no row afterwards
+        when(messageRepository.markMessageAsDeleted(MESSAGE_ID)).thenReturn(1, 0);
+        when(attachmentRepository.findByMessageId(MESSAGE_ID))
+                .thenReturn(List.of(MessageAttachment.builder().blobHash(HASH).build()));
+
+        messageService.deleteMessage(MESSAGE_ID, SENDER_ID);
+        messageService.deleteMessage(MESSAGE_ID, SENDER_ID);
+
+        verify(blobStore, times(1)).release(HASH);
+        verify(messageSearchService, times(1)).remove(MESSAGE_ID);
+        verify(inboxService, times(1)).recordDelete(5L, MESSAGE_ID);
+        verify(conversationBroadcaster, times(1)).broadcastAfterCommit(eq(5L), any(), any());
+    }
+}
@@ -0,0 +1,43 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A non-member must not be able to spend an upload token on someone else's conversation
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageServiceUploadedAttachmentTest {
+
+    private static final Long SENDER_ID = 1L;
+    private static final Long CONVERSATION_ID = 5L;
+
+    @Mock
+    private MembershipIndex membershipIndex;
+
+    @Mock
+    private AttachmentTokenService attachmentTokenService;
+
+    @InjectMocks
+    private MessageService messageService;
+
+    @Test
+    void nonMemberIsRejectedBeforeTheTokenIsClaimed() {
+        when(membershipIndex.isMember(CONVERSATION_ID, SENDER_ID)).thenReturn(false);
+
+        assertThrows(SecurityException.class, () ->
+                messageService.sendMessageWithUploadedAttachment(SENDER_ID, CONVERSATION_ID, "hi", "token"));
+
+        verify(attachmentTokenService, never()).claim(any(), any());
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatapp.whatsapp.service;
+
+import com.chatapp.whatsapp.broadcast.ConversationBroadcaster;
+import com.chatapp.whatsapp.cache.MembershipIndex;
+import com.chatapp.whatsapp.cache.SenderProfileCache;
+import com.chatapp.whatsapp.dto.TypingIndicatorDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Typing events are decided from cached membership and profiles only
+ */
+class TypingIndicatorServiceTest {
+
+    private static final Long CONVERSATION_ID = 42L;
+    private static final String TOPIC = "/topic/conversation/42";
+
+    private ConversationBroadcaster broadcaster;
+    private MembershipIndex membershipIndex;
+    private SenderProfileCache senderProfileCache;
+    private TypingIndicatorService service;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = mock(ConversationBroadcaster.class);
+        membershipIndex = mock(MembershipIndex.class);
+        senderProfileCache = mock(SenderProfileCache.class);
+        when(broadcaster.topicOf(CONVERSATION_ID)).thenReturn(TOPIC);
+        service = new TypingIndicatorService(broadcaster, membershipIndex, senderProfileCache, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void uncachedConversationIsDroppedWithoutLoadingMembers() {
+        when(membershipIndex.loadedMembers(CONVERSATION_ID)).thenReturn(Set.of());
+
+        assertTrue(service.onTyping(CONVERSATION_ID, 7L, true));
+
+        verify(membershipIndex, never()).isMember(any(), any());
+        verify(broadcaster, never()).broadcast(anyLong(), any(), any());
+    }
+
+    @Test
+    void cachedNonMemberIsRejected() {
+        when(membershipIndex.loadedMembers(CONVERSATION_ID)).thenReturn(Set.of(8L));
+
+        assertFalse(service.onTyping(CONVERSATION_ID, 7L, true));
+
+        verify(broadcaster, never()).broadcast(anyLong(), any(), any());
+    }
+
+    @Test
+    void uncachedSenderIsPublishedByIdWithoutLoadingTheProfile() {
+        when(membershipIndex.loadedMembers(CONVERSATION_ID)).thenReturn(Set.of(7L));
+
+        assertTrue(service.onTyping(CONVERSATION_ID, 7L, true));
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(broadcaster).broadcast(eq(CONVERSATION_ID), eq(TOPIC + "/typing"), payload.capture());
+        TypingIndicatorDTO indicator = (TypingIndicatorDTO) payload.getValue();
+        assertTrue(indicator.getIsTyping());
+        assertNull(indicator.getSenderUsername());
+        verify(senderProfileCache, never()).get(any());
+    }
+}
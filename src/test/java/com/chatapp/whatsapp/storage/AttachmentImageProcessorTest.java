@@ -0,0 +1,71 @@
+package com.chatapp.whatsapp.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Images the bounded queue could not take are picked up again by the sweep, which walks the table
+ * in id order and starts over once it reaches the end
+ */
+class AttachmentImageProcessorTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    private JdbcTemplate jdbcTemplate;
+    private BlobStore blobStore;
+    private AttachmentImageProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        blobStore = mock(BlobStore.class);
+        processor = new AttachmentImageProcessor(blobStore, jdbcTemplate, new SimpleMeterRegistry(), 1, 100, 1_000_000, BATCH_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        processor.stop();
+    }
+
+    @Test
+    void sweepResumesAfterTheLastRowAndWrapsAround() {
+        when(jdbcTemplate.queryForList(anyString(), eq(0L), eq(BATCH_SIZE)))
+                .thenReturn(List.of(row(5L, "aa"), row(9L, "bb")));
+        when(jdbcTemplate.queryForList(anyString(), eq(9L), eq(BATCH_SIZE)))
+                .thenReturn(List.of(row(12L, "cc")));
+
+        processor.sweepUnprocessed();
+        processor.sweepUnprocessed();
+        processor.sweepUnprocessed();
+
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(0L), eq(BATCH_SIZE));
+        verify(jdbcTemplate).queryForList(anyString(), eq(9L), eq(BATCH_SIZE));
+    }
+
+    @Test
+    void sweptRowsAreProcessed() {
+        when(jdbcTemplate.queryForList(anyString(), eq(0L), eq(BATCH_SIZE))).thenReturn(List.of(row(5L, "aa")));
+
+        processor.sweepUnprocessed();
+
+        verify(blobStore, timeout(1000)).pathOf("aa");
+    }
+
+    private static Map<String, Object> row(Long id, String hash) {
+        return Map.of("id", id, "blob_hash", hash);
+    }
+}
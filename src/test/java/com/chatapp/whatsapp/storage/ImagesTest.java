@@ -0,0 +1,121 @@
+package com.chatapp.whatsapp.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Photos are stored sideways with an EXIF orientation; decoding must turn them upright before any variant is made
+ */
+class ImagesTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+    private static final long MAX_PIXELS = 1_000_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void imageWithoutExifIsUnchanged() throws IOException {
+        Path file = writeMarkedJpeg(null, false);
+
+        BufferedImage decoded = Images.decode(file, MAX_PIXELS);
+
+        assertEquals(1, Images.exifOrientation(file));
+        assertEquals(WIDTH, decoded.getWidth());
+        assertEquals(HEIGHT, decoded.getHeight());
+        assertRed(decoded, 8, 8);
+    }
+
+    @Test
+    void clockwiseOrientationIsRotatedUpright() throws IOException {
+        Path file = writeMarkedJpeg(6, false);
+
+        BufferedImage decoded = Images.decode(file, MAX_PIXELS);
+
+        assertEquals(6, Images.exifOrientation(file));
+        assertEquals(HEIGHT, decoded.getWidth());
+        assertEquals(WIDTH, decoded.getHeight());
+        // The top-left corner ends up top-right
+        assertRed(decoded, HEIGHT - 8, 8);
+    }
+
+    @Test
+    void counterClockwiseOrientationInLittleEndianExif() throws IOException {
+        Path file = writeMarkedJpeg(8, true);
+
+        BufferedImage decoded = Images.decode(file, MAX_PIXELS);
+
+        assertEquals(8, Images.exifOrientation(file));
+        assertEquals(HEIGHT, decoded.getWidth());
+        assertEquals(WIDTH, decoded.getHeight());
+        // The top-left corner ends up bottom-left
+        assertRed(decoded, 8, WIDTH - 8);
+    }
+
+    @Test
+    void upsideDownOrientationIsRotatedHalfATurn() throws IOException {
+        BufferedImage decoded = Images.decode(writeMarkedJpeg(3, false), MAX_PIXELS);
+
+        assertEquals(WIDTH, decoded.getWidth());
+        assertRed(decoded, WIDTH - 8, HEIGHT - 8);
+    }
+
+    /**
+     * A blue JPEG with a red 16x16 block in its top-left corner, optionally carrying an EXIF orientation
+     */
+    private Path writeMarkedJpeg(Integer orientation, boolean littleEndian) throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 16, 16);
+        graphics.dispose();
+
+        Path file = dir.resolve("photo-" + orientation + (littleEndian ? "-le" : "") + ".jpg");
+        Images.writeJpeg(image, file, 0.95f);
+        if (orientation != null) {
+            byte[] jpeg = Files.readAllBytes(file);
+            // Insert the APP1 segment after SOI and the JFIF APP0 segment
+            int afterApp0 = 4 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(jpeg, 0, afterApp0);
+            out.write(exifSegment(orientation, littleEndian));
+            out.write(jpeg, afterApp0, jpeg.length - afterApp0);
+            Files.write(file, out.toByteArray());
+        }
+        return file;
+    }
+
+    private static byte[] exifSegment(int orientation, boolean littleEndian) {
+        byte[] tiff = littleEndian
+                ? new byte[]{'I', 'I', 0x2A, 0, 8, 0, 0, 0, 1, 0, 0x12, 0x01, 3, 0, 1, 0, 0, 0, (byte) orientation, 0, 0, 0, 0, 0, 0, 0}
+                : new byte[]{'M', 'M', 0, 0x2A, 0, 0, 0, 8, 0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, 0, 0, 0, 0};
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff);
+        return out.toByteArray();
+    }
+
+    private static void assertRed(BufferedImage image, int x, int y) {
+        Color color = new Color(image.getRGB(x, y));
+        assertTrue(color.getRed() > 200 && color.getBlue() < 80, "expected red at " + x + "," + y + " but was " + color);
+    }
+}